@@ -0,0 +1,78 @@
+package com.bati.fabricscheduler.benchmark;
+
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.impl.FabricSchedulerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Round-trip latency of {@code callSyncMethod(...).get()} and of the main thread executor from a worker thread,
+ * while a simulated main thread runs heartbeats with the given pause between ticks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallSyncMethodBenchmark {
+
+    @Param({"0", "1000"})
+    public long tickIntervalMicros;
+
+    private FabricSchedulerImpl scheduler;
+    private Mod mod;
+    private Thread mainThread;
+    private volatile boolean running;
+
+    @Setup
+    public void setup() {
+        scheduler = new FabricSchedulerImpl();
+        mod = SchedulerBenchmarks.mod("callsync");
+        running = true;
+        mainThread = new Thread(() -> {
+            int tick = 0;
+            while (running) {
+                scheduler.mainThreadHeartbeat(tick++);
+                if (tickIntervalMicros > 0) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(tickIntervalMicros));
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        }, "Benchmark Main Thread");
+        mainThread.setDaemon(true);
+        mainThread.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        mainThread.join();
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public Integer callSyncMethod() throws Exception {
+        return scheduler.callSyncMethod(mod, () -> 1).get();
+    }
+
+    @Benchmark
+    public Integer mainThreadExecutor() throws Exception {
+        return CompletableFuture.supplyAsync(() -> 1, scheduler.getMainThreadExecutor()).get();
+    }
+}
@@ -0,0 +1,79 @@
+package com.bati.fabricscheduler.benchmark;
+
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.impl.FabricSchedulerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancelling tasks while the scheduler holds a given number of unrelated tasks, which should not matter.
+ * Each operation schedules the tasks it cancels, so compare against {@link SubmissionBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CancelBenchmark {
+
+    private static final int MOD_TASKS = 100;
+
+    @Param({"1000", "100000"})
+    public int background;
+
+    private FabricSchedulerImpl scheduler;
+    private Mod mod;
+    private int tick;
+
+    @Setup
+    public void setup() {
+        scheduler = new FabricSchedulerImpl();
+        mod = SchedulerBenchmarks.mod("cancel");
+        final Mod other = SchedulerBenchmarks.mod("background");
+        for (int i = 0; i < background; i++) {
+            scheduler.runTaskTimer(other, SchedulerBenchmarks.NOOP, Integer.MAX_VALUE, 20);
+        }
+        scheduler.mainThreadHeartbeat(tick = 0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void parse() {
+        // Drops the cancelled tasks from the incoming queue
+        scheduler.mainThreadHeartbeat(++tick);
+    }
+
+    @TearDown
+    public void tearDown() {
+        SchedulerBenchmarks.drain(scheduler, ++tick);
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public void cancelTask() {
+        scheduler.cancelTask(scheduler.runTaskLater(mod, SchedulerBenchmarks.NOOP, 20).getTaskId());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOD_TASKS)
+    public void cancelTasks() {
+        for (int i = 0; i < MOD_TASKS; i++) {
+            scheduler.runTaskLater(mod, SchedulerBenchmarks.NOOP, 20);
+        }
+        scheduler.cancelTasks(mod);
+    }
+}
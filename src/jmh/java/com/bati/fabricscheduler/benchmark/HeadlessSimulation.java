@@ -0,0 +1,57 @@
+package com.bati.fabricscheduler.benchmark;
+
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.impl.FabricManualTickClock;
+import com.bati.fabricscheduler.impl.FabricSchedulerConfig;
+import com.bati.fabricscheduler.impl.FabricSchedulerImpl;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives the scheduler through virtual ticks as fast as it goes, without a server, to profile the engine
+ * under a steady mix of timers, delayed tasks and cancellations.
+ * <p>
+ * Arguments: ticks (default 1000000), timers (default 10000), one-shot tasks submitted per tick (default 100).
+ */
+public final class HeadlessSimulation {
+
+    private HeadlessSimulation() {
+    }
+
+    public static void main(final String[] args) {
+        final int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final int timers = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        final int perTick = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(new FabricSchedulerConfig(), clock);
+        final Mod mod = SchedulerBenchmarks.mod("simulation");
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < timers; i++) {
+            scheduler.runTaskTimer(mod, SchedulerBenchmarks.NOOP, random.nextInt(100), 1 + random.nextInt(100));
+        }
+
+        final long started = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            for (int j = 0; j < perTick; j++) {
+                final int id = scheduler.runTaskLater(mod, SchedulerBenchmarks.NOOP, random.nextInt(1200)).getTaskId();
+                if (j % 10 == 0) {
+                    scheduler.cancelTask(id);
+                }
+            }
+            clock.advance();
+            scheduler.heartbeat();
+        }
+        final long elapsed = System.nanoTime() - started;
+
+        System.out.printf(
+                "%d ticks in %.2fs, %.2fus per tick, %d tasks pending%n",
+                ticks,
+                elapsed / 1e9,
+                elapsed / 1e3 / ticks,
+                scheduler.getPendingTasks().size());
+        SchedulerBenchmarks.drain(scheduler, clock.advance());
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,68 @@
+package com.bati.fabricscheduler.benchmark;
+
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.impl.FabricSchedulerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@code mainThreadHeartbeat} with a given number of tasks in the scheduler.
+ * <ul>
+ * <li>{@code delayed}: one-shot tasks due far in the future, none run
+ * <li>{@code repeating}: no-op timers with a period of 20 ticks spread over the period, 1/20th run per tick
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeartbeatBenchmark {
+
+    @Param({"1000", "100000"})
+    public int tasks;
+
+    @Param({"delayed", "repeating"})
+    public String kind;
+
+    private FabricSchedulerImpl scheduler;
+    private int tick;
+
+    @Setup
+    public void setup() {
+        scheduler = new FabricSchedulerImpl();
+        final Mod mod = SchedulerBenchmarks.mod("heartbeat");
+        for (int i = 0; i < tasks; i++) {
+            if (kind.equals("delayed")) {
+                scheduler.runTaskLater(mod, SchedulerBenchmarks.NOOP, Integer.MAX_VALUE);
+            } else {
+                scheduler.runTaskTimer(mod, SchedulerBenchmarks.NOOP, i % 20, 20);
+            }
+        }
+        scheduler.mainThreadHeartbeat(tick = 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        SchedulerBenchmarks.drain(scheduler, ++tick);
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public void heartbeat() {
+        scheduler.mainThreadHeartbeat(++tick);
+    }
+}
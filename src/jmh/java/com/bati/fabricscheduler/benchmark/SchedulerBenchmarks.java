@@ -0,0 +1,29 @@
+package com.bati.fabricscheduler.benchmark;
+
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.impl.FabricSchedulerImpl;
+
+/**
+ * Shared fixtures of the scheduler benchmarks.
+ */
+final class SchedulerBenchmarks {
+
+    static final Runnable NOOP = () -> {};
+
+    private SchedulerBenchmarks() {
+    }
+
+    static Mod mod(final String id) {
+        final Mod mod = new Mod(id, id, "1.0.0");
+        mod.setEnabled(true);
+        return mod;
+    }
+
+    /**
+     * Runs heartbeats until every queued task has been parsed and dropped.
+     */
+    static void drain(final FabricSchedulerImpl scheduler, final int tick) {
+        scheduler.cancelAllTasks();
+        scheduler.mainThreadHeartbeat(tick);
+    }
+}
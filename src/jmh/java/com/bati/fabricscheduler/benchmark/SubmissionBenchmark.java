@@ -0,0 +1,85 @@
+package com.bati.fabricscheduler.benchmark;
+
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.impl.FabricSchedulerImpl;
+import com.bati.fabricscheduler.model.FabricTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code runTaskLater} from a growing number of producer threads. The main thread is not
+ * simulated, submitted tasks are dropped between iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubmissionBenchmark {
+
+    private static final List<Runnable> BATCH = Collections.nCopies(100, SchedulerBenchmarks.NOOP);
+
+    private FabricSchedulerImpl scheduler;
+    private Mod mod;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        scheduler = new FabricSchedulerImpl();
+        mod = SchedulerBenchmarks.mod("submission");
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        SchedulerBenchmarks.drain(scheduler, 0);
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public FabricTask runTaskLater1() {
+        return scheduler.runTaskLater(mod, SchedulerBenchmarks.NOOP, 20);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public FabricTask runTaskLater4() {
+        return scheduler.runTaskLater(mod, SchedulerBenchmarks.NOOP, 20);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public FabricTask runTaskLater16() {
+        return scheduler.runTaskLater(mod, SchedulerBenchmarks.NOOP, 20);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public FabricTask runTaskLater64() {
+        return scheduler.runTaskLater(mod, SchedulerBenchmarks.NOOP, 20);
+    }
+
+    /**
+     * 100 tasks per operation, compare against 100 times {@code runTaskLater16}.
+     */
+    @Benchmark
+    @Threads(16)
+    public List<FabricTask> runTaskTimerBatch16() {
+        return scheduler.runTaskTimerBatch(mod, BATCH, 20, -1l);
+    }
+}
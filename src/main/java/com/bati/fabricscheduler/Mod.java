@@ -25,6 +25,17 @@ public class Mod {
         authors = metaData.getAuthors().stream().toList();
     }
 
+    /**
+     * Creates a mod that is not looked up in Fabric Loader, e.g. to drive the scheduler from benchmarks.
+     */
+    public Mod(String id, String name, String version) {
+        this.id = id;
+        this.name = name;
+        this.version = version;
+        logger = Logger.getLogger(id);
+        authors = List.of();
+    }
+
     public List<Person> getAuthors() {
         return authors;
     }
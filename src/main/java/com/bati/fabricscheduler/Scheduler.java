@@ -1,9 +1,12 @@
 package com.bati.fabricscheduler;
 
+import com.bati.fabricscheduler.impl.FabricSchedulerConfig;
 import com.bati.fabricscheduler.impl.FabricSchedulerImpl;
 import com.bati.fabricscheduler.model.FabricScheduler;
 import com.bati.fabricscheduler.model.FabricWorker;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.loader.api.FabricLoader;
 
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
@@ -16,13 +19,20 @@ public class Scheduler implements ModInitializer {
     public static final Logger LOGGER = Logger.getLogger("fabric-scheduler");
 
 	private static FabricSchedulerImpl scheduler;
+	private final ServerTickClock clock = new ServerTickClock();
 	@Override
 	public void onInitialize() {
-		scheduler = new FabricSchedulerImpl();
+		scheduler = new FabricSchedulerImpl(FabricSchedulerConfig.load(
+				FabricLoader.getInstance().getConfigDir().resolve("fabric-scheduler.properties"), LOGGER), clock);
+		scheduler.getMetrics().register();
 
 
+		ServerLifecycleEvents.SERVER_STARTING.register(clock::setServer);
 		ServerLifecycleEvents.SERVER_STOPPING.register(server -> onDisable());
-		ServerTickEvents.END_SERVER_TICK.register(server -> scheduler.mainThreadHeartbeat(server.getTicks()));
+		ServerLifecycleEvents.SERVER_STOPPED.register(server -> clock.setServer(null));
+		ServerTickEvents.START_SERVER_TICK.register(server -> scheduler.drainMainThreadExecutor());
+		ServerTickEvents.END_SERVER_TICK.register(server -> scheduler.heartbeat());
+		CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> SchedulerCommand.register(dispatcher));
 	}
 
 	public static FabricScheduler get() {
@@ -0,0 +1,65 @@
+package com.bati.fabricscheduler;
+
+import com.bati.fabricscheduler.model.FabricTaskTimings;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code /scheduler top [count]} lists the mods and task classes that spent the most time in scheduled tasks,
+ * {@code /scheduler reset} clears the collected timings.
+ */
+class SchedulerCommand {
+
+    private static final int DEFAULT_COUNT = 10;
+
+    static void register(final CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("scheduler")
+                .requires(source -> source.hasPermissionLevel(3))
+                .then(CommandManager.literal("top")
+                        .executes(context -> top(context.getSource(), DEFAULT_COUNT))
+                        .then(CommandManager.argument("count", IntegerArgumentType.integer(1, 100))
+                                .executes(context -> top(context.getSource(), IntegerArgumentType.getInteger(context, "count")))))
+                .then(CommandManager.literal("reset")
+                        .executes(context -> {
+                            Scheduler.get().resetTimings();
+                            context.getSource().sendFeedback(Text.literal("Scheduler timings reset"), true);
+                            return 1;
+                        })));
+    }
+
+    private static int top(final ServerCommandSource source, final int count) {
+        source.sendFeedback(Text.literal("Scheduler time by mod (runs, total, avg, p99, max):"), false);
+        for (Map.Entry<Mod, FabricTaskTimings> entry : top(Scheduler.get().getModTimings(), count)) {
+            source.sendFeedback(Text.literal(line(entry.getKey().getId(), entry.getValue())), false);
+        }
+        source.sendFeedback(Text.literal("Scheduler time by task class:"), false);
+        for (Map.Entry<Class<?>, FabricTaskTimings> entry : top(Scheduler.get().getTaskClassTimings(), count)) {
+            source.sendFeedback(Text.literal(line(entry.getKey().getName(), entry.getValue())), false);
+        }
+        return 1;
+    }
+
+    private static <K> List<Map.Entry<K, FabricTaskTimings>> top(final Map<K, FabricTaskTimings> timings, final int count) {
+        final List<Map.Entry<K, FabricTaskTimings>> entries = new ArrayList<>(timings.entrySet());
+        entries.sort((o1, o2) -> Long.compare(o2.getValue().getTotalNanos(), o1.getValue().getTotalNanos()));
+        return entries.subList(0, Math.min(count, entries.size()));
+    }
+
+    private static String line(final String name, final FabricTaskTimings timings) {
+        return String.format(
+                "  %s: %d, %.2fms, %.3fms, %.3fms, %.3fms",
+                name,
+                timings.getCount(),
+                timings.getTotalNanos() / 1e6,
+                timings.getAverageNanos() / 1e6,
+                timings.getPercentileNanos(0.99) / 1e6,
+                timings.getMaxNanos() / 1e6);
+    }
+}
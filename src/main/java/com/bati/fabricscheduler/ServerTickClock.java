@@ -0,0 +1,21 @@
+package com.bati.fabricscheduler;
+
+import com.bati.fabricscheduler.impl.FabricTickClock;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Reads the tick of the running server, the only part of the scheduler's time that depends on Minecraft.
+ */
+class ServerTickClock implements FabricTickClock {
+
+    private volatile MinecraftServer server;
+
+    void setServer(final MinecraftServer server) {
+        this.server = server;
+    }
+
+    public int getTick() {
+        final MinecraftServer server = this.server;
+        return server == null ? -1 : server.getTicks();
+    }
+}
@@ -2,35 +2,61 @@ package com.bati.fabricscheduler.impl;
 
 import com.bati.fabricscheduler.Mod;
 
+/**
+ * Recently launched async tasks, in a preallocated ring so recording a launch never allocates.
+ * <p>
+ * Written by the main thread only. Other threads may read it for diagnostics, and can then see an entry
+ * that is being overwritten.
+ */
 class FabricAsyncDebugger {
-    private FabricAsyncDebugger next = null;
-    private final int expiry;
-    private final Mod mod;
-    private final Class<? extends Runnable> clazz;
 
-    FabricAsyncDebugger(final int expiry, final  Mod mod, final Class<? extends Runnable> clazz) {
-        this.expiry = expiry;
-        this.mod = mod;
-        this.clazz = clazz;
+    private final int[] expiries;
+    private final Mod[] mods;
+    private final Class<?>[] classes;
+    private final int mask;
+    /**
+     * Launches recorded so far, the next entry is written at {@code count & mask}
+     */
+    private volatile long count;
 
-    }
-
-    final FabricAsyncDebugger getNextHead(final int time) {
-        FabricAsyncDebugger next, current = this;
-        while (time > current.expiry && (next = current.next) != null) {
-            current = next;
+    /**
+     * @param capacity most launches kept, rounded up to a power of two
+     */
+    FabricAsyncDebugger(final int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
         }
-        return current;
+        this.expiries = new int[size];
+        this.mods = new Mod[size];
+        this.classes = new Class<?>[size];
+        this.mask = size - 1;
     }
 
-    final FabricAsyncDebugger setNext(final FabricAsyncDebugger next) {
-        return this.next = next;
+    void record(final int expiry, final Mod mod, final Class<?> clazz) {
+        final long count = this.count;
+        final int index = (int) count & mask;
+        expiries[index] = expiry;
+        mods[index] = mod;
+        classes[index] = clazz;
+        this.count = count + 1;
     }
 
-    StringBuilder debugTo(final StringBuilder string) {
-        for (FabricAsyncDebugger next = this; next != null; next = next.next) {
-            string.append(next.mod.getId()).append(':').append(next.clazz.getName()).append('@').append(next.expiry).append(',');
+    /**
+     * Appends the launches that have not expired at the given tick, oldest first.
+     */
+    StringBuilder debugTo(final StringBuilder string, final int time) {
+        final long count = this.count;
+        for (long i = Math.max(0, count - expiries.length); i < count; i++) {
+            final int index = (int) i & mask;
+            final int expiry = expiries[index];
+            final Mod mod = mods[index];
+            final Class<?> clazz = classes[index];
+            if (expiry < time || mod == null || clazz == null) {
+                continue;
+            }
+            string.append(mod.getId()).append(':').append(clazz.getName()).append('@').append(expiry).append(',');
         }
         return string;
     }
-}
\ No newline at end of file
+}
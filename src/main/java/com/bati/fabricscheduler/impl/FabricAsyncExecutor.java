@@ -0,0 +1,270 @@
+package com.bati.fabricscheduler.impl;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Bounded thread pool running the async tasks, with a configurable policy for when its queue is full.
+ * <p>
+ * The pool grows to its max size before tasks start to queue, so a few
+ * blocking tasks can't hold back everyone else's work behind a long queue.
+ * Idle threads stop after the keep-alive time, down to none.
+ * <p>
+ * When enabled and the runtime supports them, tasks run on virtual threads
+ * instead, one per execution, bounded by a permit count rather than a queue.
+ */
+class FabricAsyncExecutor implements Executor, RejectedExecutionHandler {
+
+    private final ThreadPoolExecutor pool;
+    /**
+     * Null unless tasks run on virtual threads
+     */
+    private final ExecutorService virtual;
+    private final Semaphore virtualPermits;
+    private final int virtualLimit;
+    private final AtomicInteger virtualRunning = new AtomicInteger();
+    private final FabricSchedulerConfig.RejectionPolicy policy;
+    /**
+     * Tasks rejected under {@link FabricSchedulerConfig.RejectionPolicy#DEFER}, guarded by itself
+     */
+    private final ArrayDeque<Runnable> deferred = new ArrayDeque<Runnable>();
+    private final AtomicLong rejected = new AtomicLong();
+
+    FabricAsyncExecutor(final FabricSchedulerConfig config) {
+        final int core = Math.max(1, config.getAsyncCoreThreads());
+        final int max = Math.max(core, config.getAsyncMaxThreads());
+        // Threads above the core size would only start once the queue is full
+        this.pool = new ThreadPoolExecutor(
+                max,
+                max,
+                Math.max(1l, config.getAsyncKeepAliveSeconds()),
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, config.getAsyncQueueCapacity())),
+                new ThreadFactory() {
+                    private final AtomicInteger threads = new AtomicInteger();
+
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "Fabric Scheduler Thread - " + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                this);
+        pool.allowCoreThreadTimeOut(true);
+        this.policy = config.getAsyncRejectionPolicy();
+        this.virtual = config.isAsyncVirtualThreads() ? newVirtualThreadExecutor() : null;
+        if (virtual == null) {
+            for (int i = 0; i < core; i++) {
+                pool.prestartCoreThread();
+            }
+        }
+        this.virtualLimit = Math.max(1, config.getAsyncMaxVirtualThreads());
+        this.virtualPermits = new Semaphore(virtualLimit);
+        if (config.isAsyncVirtualThreads() && virtual == null) {
+            FabricSchedulerImpl.LOGGER.warning("Virtual threads are not supported by this Java runtime, async tasks will use platform threads");
+        }
+    }
+
+    public void execute(final Runnable task) {
+        if (virtual == null) {
+            pool.execute(task);
+            return;
+        }
+        if (virtual.isShutdown()) {
+            return;
+        }
+        if (!virtualPermits.tryAcquire()) {
+            reject(task);
+            return;
+        }
+        virtual.execute(() -> {
+            virtualRunning.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                virtualRunning.decrementAndGet();
+                virtualPermits.release();
+            }
+        });
+    }
+
+    /**
+     * @return how many tasks run at once before the next ones queue up or are rejected
+     */
+    int getConcurrency() {
+        return virtual == null ? pool.getMaximumPoolSize() : virtualLimit;
+    }
+
+    /**
+     * Lets the running and queued tasks finish, then stops the threads. Later launches are dropped.
+     */
+    void shutdown() {
+        pool.shutdown();
+        if (virtual != null) {
+            virtual.shutdown();
+        }
+    }
+
+    /**
+     * Called on the launching thread when both the pool and its queue are full.
+     */
+    public void rejectedExecution(final Runnable task, final ThreadPoolExecutor pool) {
+        if (!pool.isShutdown()) {
+            reject(task);
+        }
+    }
+
+    private void reject(final Runnable launch) {
+        rejected.incrementAndGet();
+        final Runnable task = unwrap(launch);
+        switch (policy) {
+            case CALLER_RUNS:
+                if (task instanceof FabricTimedAsyncTask) {
+                    // Running it inline would hold the timer thread, and every wall-clock timer with it
+                    deferTimed(launch, (FabricTimedAsyncTask) task);
+                    break;
+                }
+                try {
+                    launch.run();
+                } catch (final Throwable throwable) {
+                    log(task, "generated an exception", throwable);
+                }
+                break;
+            case FAIL:
+                log(task, "was rejected, the async queue is full", null);
+                release(launch);
+                if (task instanceof FabricTaskImpl && ((FabricTaskImpl) task).getPeriod() < 0) {
+                    // It will never run, so nothing else would unregister it
+                    ((FabricTaskImpl) task).cancel0();
+                }
+                if (task instanceof FabricAsyncTask) {
+                    ((FabricAsyncTask) task).launchRejected();
+                }
+                break;
+            case DEFER:
+                if (task instanceof FabricTimedAsyncTask) {
+                    deferTimed(launch, (FabricTimedAsyncTask) task);
+                    break;
+                }
+                synchronized (deferred) {
+                    deferred.add(launch);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Retries a wall-clock timer from the timer thread. It is not known to the heartbeat, and is launched through
+     * fair share again.
+     */
+    private static void deferTimed(final Runnable launch, final FabricTimedAsyncTask task) {
+        release(launch);
+        task.deferLaunch();
+    }
+
+    /**
+     * Launches the tasks deferred since the last call again. Tasks rejected again wait for the next call.
+     */
+    void launchDeferred() {
+        int count;
+        synchronized (deferred) {
+            count = deferred.size();
+        }
+        while (count-- > 0) {
+            final Runnable launch;
+            synchronized (deferred) {
+                launch = deferred.poll();
+            }
+            if (launch == null) {
+                return;
+            }
+            final Runnable task = unwrap(launch);
+            if (task instanceof FabricTaskImpl && ((FabricTaskImpl) task).getPeriod() == -2l) {
+                release(launch);
+                continue;
+            }
+            execute(launch);
+        }
+    }
+
+    int getQueueDepth() {
+        return virtual == null ? pool.getQueue().size() : 0;
+    }
+
+    int getActiveCount() {
+        return virtual == null ? pool.getActiveCount() : virtualRunning.get();
+    }
+
+    int getPoolSize() {
+        return virtual == null ? pool.getPoolSize() : getActiveCount();
+    }
+
+    int getDeferredCount() {
+        synchronized (deferred) {
+            return deferred.size();
+        }
+    }
+
+    long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * The build targets Java 17, so the Java 21 virtual thread API is looked up reflectively.
+     *
+     * @return a thread-per-task executor on virtual threads, or null if the runtime has none
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "Fabric Scheduler Virtual Thread - ", 1l);
+            final ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            // Older runtime, or virtual threads still in preview
+            return null;
+        }
+    }
+
+    /**
+     * @return the task of a fair share launch, or the given task
+     */
+    private static Runnable unwrap(final Runnable task) {
+        return task instanceof FabricFairShareExecutor.Launch ? ((FabricFairShareExecutor.Launch) task).getTask() : task;
+    }
+
+    /**
+     * Frees the fair share slot of a launch that will not run.
+     */
+    private static void release(final Runnable task) {
+        if (task instanceof FabricFairShareExecutor.Launch) {
+            ((FabricFairShareExecutor.Launch) task).rejected();
+        }
+    }
+
+    private static void log(final Runnable task, final String message, final Throwable throwable) {
+        if (task instanceof FabricTaskImpl) {
+            final FabricTaskImpl fabricTask = (FabricTaskImpl) task;
+            fabricTask.getOwner().getLogger().log(
+                    Level.WARNING,
+                    String.format(
+                            "Task #%s for %s %s",
+                            fabricTask.getTaskId(),
+                            fabricTask.getOwner().getName(),
+                            message),
+                    throwable);
+        }
+    }
+}
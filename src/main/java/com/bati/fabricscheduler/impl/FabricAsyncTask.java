@@ -2,20 +2,44 @@ package com.bati.fabricscheduler.impl;
 
 import com.bati.fabricscheduler.Mod;
 import com.bati.fabricscheduler.model.FabricWorker;
+import com.bati.fabricscheduler.model.OverlapPolicy;
 import org.apache.commons.lang.UnhandledException;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 class FabricAsyncTask extends FabricTaskImpl {
 
-    private final LinkedList<FabricWorker> workers = new LinkedList<FabricWorker>();
-    private final Map<Integer, FabricTaskImpl> runners;
+    private static final AtomicIntegerFieldUpdater<FabricAsyncTask> LAUNCH = AtomicIntegerFieldUpdater.newUpdater(FabricAsyncTask.class, "launch");
+    private static final int IDLE = 0;
+    private static final int LAUNCHED = 1;
+    private static final int LAUNCHED_AGAIN = 2;
 
-    FabricAsyncTask(final Map<Integer, FabricTaskImpl> runners, final Mod mod, final Runnable task, final int id, final long delay) {
+    /**
+     * Guarded by itself
+     */
+    private final ArrayList<FabricWorkerImpl> workers = new ArrayList<FabricWorkerImpl>(1);
+    /**
+     * Worker reused by runs that do not overlap, guarded by {@link #workers}
+     */
+    private final FabricWorkerImpl worker;
+    private final FabricTaskRegistry runners;
+    private final FabricTaskProfiler profiler;
+    /**
+     * Set before the task is queued
+     */
+    private OverlapPolicy overlapPolicy = OverlapPolicy.ALLOW;
+    /**
+     * Unless overlap is allowed, whether a launched run has not ended yet, and whether a follow-up run is due
+     */
+    private volatile int launch = IDLE;
+
+    FabricAsyncTask(final FabricTaskRegistry runners, final FabricTaskProfiler profiler, final Mod mod, final Runnable task, final int id, final long delay) {
         super(mod, task, id, delay);
         this.runners = runners;
+        this.profiler = profiler;
+        this.worker = new FabricWorkerImpl(id, mod, null);
     }
 
     @Override
@@ -23,29 +47,92 @@ class FabricAsyncTask extends FabricTaskImpl {
         return false;
     }
 
+    void setOverlapPolicy(OverlapPolicy overlapPolicy) {
+        this.overlapPolicy = overlapPolicy;
+    }
+
+    /**
+     * Called by the heartbeat before launching a run.
+     *
+     * @return false if the previous run has not ended and overlap is not allowed
+     */
+    boolean tryLaunch() {
+        if (overlapPolicy == OverlapPolicy.ALLOW || LAUNCH.compareAndSet(this, IDLE, LAUNCHED)) {
+            return true;
+        }
+        if (overlapPolicy == OverlapPolicy.COALESCE) {
+            LAUNCH.compareAndSet(this, LAUNCHED, LAUNCHED_AGAIN);
+        }
+        return false;
+    }
+
+    /**
+     * Called when a launched run was dropped by the executor, so the next one is not skipped.
+     */
+    void launchRejected() {
+        launch = IDLE;
+    }
+
     @Override
     public void run() {
+        if (overlapPolicy == OverlapPolicy.ALLOW) {
+            runOnce();
+            return;
+        }
+        boolean again = true;
+        try {
+            while (again) {
+                runOnce();
+                again = runAgain();
+            }
+        } finally {
+            if (again) {
+                // The run threw, drop any follow-up
+                launch = IDLE;
+            }
+        }
+    }
+
+    /**
+     * Ends a launched run, unless a follow-up was requested meanwhile.
+     *
+     * @return true if the task should run again right away
+     */
+    private boolean runAgain() {
+        while (true) {
+            if (LAUNCH.compareAndSet(this, LAUNCHED_AGAIN, LAUNCHED)) {
+                return true;
+            }
+            if (LAUNCH.compareAndSet(this, LAUNCHED, IDLE)) {
+                return false;
+            }
+        }
+    }
+
+    private void runOnce() {
         final Thread thread = Thread.currentThread();
+        final long started = profiler.nanoTime();
+        final FabricSchedulerImpl scheduler = getScheduler();
+        final FabricWatchdog watchdog = scheduler == null ? null : scheduler.getWatchdog();
         synchronized(workers) {
             if (getPeriod() == -2) {
                 // Never continue running after cancelled.
                 // Checking this with the lock is important!
                 return;
             }
-            workers.add(
-                    new FabricWorker() {
-                        public Thread getThread() {
-                            return thread;
-                        }
-
-                        public int getTaskId() {
-                            return FabricAsyncTask.this.getTaskId();
-                        }
-
-                        public Mod getOwner() {
-                            return FabricAsyncTask.this.getOwner();
-                        }
-                    });
+            final FabricWorkerImpl worker;
+            if (this.worker.getThread() == null) {
+                worker = this.worker;
+                worker.setThread(thread);
+            } else {
+                // Overlapping run of a timer, the shared worker is taken
+                worker = new FabricWorkerImpl(getTaskId(), getOwner(), thread);
+            }
+            worker.setStarted(started);
+            workers.add(worker);
+            if (watchdog != null) {
+                watchdog.asyncStarted(thread, worker);
+            }
         }
         Throwable thrown = null;
         try {
@@ -59,14 +146,21 @@ class FabricAsyncTask extends FabricTaskImpl {
                             getTaskId()),
                     thrown);
         } finally {
+            profiler.record(this, profiler.nanoTime() - started);
             // Cleanup is important for any async task, otherwise ghost tasks are everywhere
             synchronized(workers) {
                 try {
-                    final Iterator<FabricWorker> workers = this.workers.iterator();
                     boolean removed = false;
-                    while (workers.hasNext()) {
-                        if (workers.next().getThread() == thread) {
-                            workers.remove();
+                    for (int i = 0; i < workers.size(); i++) {
+                        final FabricWorkerImpl worker = workers.get(i);
+                        if (worker.getThread() == thread) {
+                            if (watchdog != null) {
+                                watchdog.asyncEnded(thread);
+                            }
+                            workers.remove(i);
+                            if (worker == this.worker) {
+                                worker.setThread(null);
+                            }
                             removed = true; // Don't throw exception
                             break;
                         }
@@ -91,10 +185,24 @@ class FabricAsyncTask extends FabricTaskImpl {
         }
     }
 
-    LinkedList<FabricWorker> getWorkers() {
+    /**
+     * Workers are reused, use {@link #snapshotWorkers(List)} to hand them out.
+     */
+    ArrayList<FabricWorkerImpl> getWorkers() {
         return workers;
     }
 
+    /**
+     * Adds copies of the current workers, which stay valid after the runs end.
+     */
+    void snapshotWorkers(final List<FabricWorker> to) {
+        synchronized (workers) {
+            for (FabricWorkerImpl worker : workers) {
+                to.add(new FabricWorkerImpl(worker.getTaskId(), worker.getOwner(), worker.getThread()));
+            }
+        }
+    }
+
     boolean cancel0() {
         synchronized (workers) {
             // Synchronizing here prevents race condition for a completing task
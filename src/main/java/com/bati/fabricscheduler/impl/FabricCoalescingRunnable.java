@@ -0,0 +1,75 @@
+package com.bati.fabricscheduler.impl;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Body of a keyed task. Until the task starts, a submission with the same key swaps the runnable it will run
+ * instead of queueing another task.
+ * <p>
+ * The key is unmapped before the runnable is taken, so a submission racing with the start either lands in
+ * this run or finds the key free and queues a new task.
+ */
+class FabricCoalescingRunnable implements Runnable {
+
+    private final ConcurrentMap<FabricTaskKey, FabricCoalescingRunnable> keys;
+    private final FabricTaskKey key;
+    /**
+     * Null once the task started
+     */
+    private final AtomicReference<Runnable> runnable;
+    private volatile Class<?> taskClass;
+    private FabricTaskImpl task;
+
+    FabricCoalescingRunnable(final ConcurrentMap<FabricTaskKey, FabricCoalescingRunnable> keys, final FabricTaskKey key, final Runnable runnable) {
+        this.keys = keys;
+        this.key = key;
+        this.runnable = new AtomicReference<Runnable>(runnable);
+        this.taskClass = runnable.getClass();
+    }
+
+    /**
+     * Set once, before the runnable is published in the key map
+     */
+    void setTask(final FabricTaskImpl task) {
+        this.task = task;
+    }
+
+    FabricTaskImpl getTask() {
+        return task;
+    }
+
+    Class<?> getTaskClass() {
+        return taskClass;
+    }
+
+    /**
+     * @return false if the task already started or was cancelled, and a new task must be queued
+     */
+    boolean replace(final Runnable replacement) {
+        Runnable current;
+        do {
+            current = runnable.get();
+            if (current == null || task.getPeriod() == -2l) {
+                return false;
+            }
+        } while (!runnable.compareAndSet(current, replacement));
+        taskClass = replacement.getClass();
+        return true;
+    }
+
+    /**
+     * Frees the key of a task that will not run.
+     */
+    void forget() {
+        keys.remove(key, this);
+    }
+
+    public void run() {
+        keys.remove(key, this);
+        final Runnable runnable = this.runnable.getAndSet(null);
+        if (runnable != null) {
+            runnable.run();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.Mod;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sync task completing a {@link CompletableFuture} with the result of its callable.
+ * <p>
+ * Unlike {@link FabricFuture}, nothing waits on a monitor: the state moves from -1 to -3 or -2 by
+ * compare-and-set, and waiting threads and continuations are released by the future itself.
+ */
+class FabricCompletableTask<T> extends FabricTaskImpl {
+
+    private final Callable<T> callable;
+    private final Result result = new Result();
+
+    FabricCompletableTask(final Callable<T> callable, final Mod mod, final int id) {
+        super(mod, null, id, -1l);
+        this.callable = callable;
+    }
+
+    CompletableFuture<T> getResult() {
+        return result;
+    }
+
+    @Override
+    public void run() {
+        if (!compareAndSetPeriod(-1l, -3l)) {
+            return;
+        }
+        final T value;
+        try {
+            value = callable.call();
+        } catch (final Throwable throwable) {
+            setPeriod(-4l);
+            result.completeExceptionally(throwable);
+            return;
+        }
+        setPeriod(-4l);
+        result.complete(value);
+    }
+
+    @Override
+    Class<?> getTaskClass() {
+        return callable.getClass();
+    }
+
+    @Override
+    boolean cancel0() {
+        if (!compareAndSetPeriod(-1l, -2l)) {
+            return false;
+        }
+        result.cancel0();
+        return true;
+    }
+
+    /**
+     * Cancelling the future cancels the task, if it has not started yet.
+     */
+    private final class Result extends CompletableFuture<T> {
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            FabricCompletableTask.this.cancel();
+            return isCancelled();
+        }
+
+        void cancel0() {
+            super.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.model.FabricTaskTimings;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Queues async tasks per owner in front of {@link FabricAsyncExecutor}, so a
+ * mod launching thousands of tasks can't starve the others.
+ * <p>
+ * At most as many tasks as the executor runs at once are handed to it; the
+ * rest wait in their owner's queue. Owners with waiting tasks are served by
+ * deficit round-robin: on its turn an owner launches as many tasks as its
+ * weight, unless it already runs its max concurrency, in which case it skips
+ * the turn.
+ */
+class FabricFairShareExecutor implements Executor {
+
+    private final Executor executor;
+    private final FabricTickClock clock;
+    private final int concurrency;
+    private final Map<String, Integer> weights;
+    private final Map<String, Integer> maxConcurrency;
+    /**
+     * Kept once created, there are only as many as mods. Guarded by this
+     */
+    private final HashMap<Mod, Lane> lanes = new HashMap<Mod, Lane>();
+    /**
+     * Owners with waiting tasks, in round-robin order, guarded by this
+     */
+    private final ArrayDeque<Lane> active = new ArrayDeque<Lane>();
+    /**
+     * Tasks handed to the executor and not finished, guarded by this
+     */
+    private int running;
+    private final ConcurrentHashMap<Mod, FabricTimingHistogram> waits = new ConcurrentHashMap<Mod, FabricTimingHistogram>();
+
+    FabricFairShareExecutor(final FabricAsyncExecutor executor, final FabricTickClock clock, final FabricSchedulerConfig config) {
+        this.executor = executor;
+        this.clock = clock;
+        this.concurrency = executor.getConcurrency();
+        this.weights = config.getAsyncModWeights();
+        this.maxConcurrency = config.getAsyncModMaxConcurrency();
+    }
+
+    public void execute(final Runnable task) {
+        if (!(task instanceof FabricTaskImpl)) {
+            executor.execute(task);
+            return;
+        }
+        final Mod owner = ((FabricTaskImpl) task).getOwner();
+        synchronized (this) {
+            final Lane lane = lanes.computeIfAbsent(owner, this::newLane);
+            lane.offer(task, clock.nanoTime());
+            if (!lane.active) {
+                lane.active = true;
+                active.add(lane);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * @return tasks waiting for their owner's turn
+     */
+    synchronized int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : active) {
+            depth += lane.size;
+        }
+        return depth;
+    }
+
+    synchronized int getQueueDepth(final Mod owner) {
+        final Lane lane = lanes.get(owner);
+        return lane == null ? 0 : lane.size;
+    }
+
+    Map<Mod, FabricTaskTimings> getWaitTimings() {
+        return Collections.unmodifiableMap(waits);
+    }
+
+    void resetWaitTimings() {
+        waits.clear();
+    }
+
+    /**
+     * Hands tasks to the executor until it runs as many as it can, or every waiting owner is at its max
+     * concurrency. Called whenever a task is queued or finishes.
+     */
+    private void dispatch() {
+        while (true) {
+            final Runnable task;
+            synchronized (this) {
+                task = next();
+            }
+            if (task == null) {
+                return;
+            }
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * @return the next task wrapped to account for its end, or null if none can be launched now
+     */
+    private Runnable next() {
+        int skipped = 0;
+        while (running < concurrency && skipped < active.size()) {
+            final Lane lane = active.peek();
+            if (lane.running >= lane.maxConcurrency) {
+                // Forfeits its turn
+                lane.deficit = 0;
+                active.add(active.poll());
+                skipped++;
+                continue;
+            }
+            if (lane.deficit == 0) {
+                lane.deficit = lane.weight;
+            }
+            final long queued = lane.queuedAt[lane.head];
+            final Runnable task = lane.poll();
+            if (lane.size == 0) {
+                active.poll();
+                lane.active = false;
+                lane.deficit = 0;
+            } else if (--lane.deficit == 0) {
+                active.add(active.poll());
+            }
+            if (task instanceof FabricTaskImpl && ((FabricTaskImpl) task).getPeriod() == -2l) {
+                continue;
+            }
+            waits.computeIfAbsent(lane.owner, owner -> new FabricTimingHistogram()).record(clock.nanoTime() - queued);
+            lane.running++;
+            running++;
+            return new Launch(lane, task);
+        }
+        return null;
+    }
+
+    private void finished(final Lane lane) {
+        release(lane);
+        dispatch();
+    }
+
+    private synchronized void release(final Lane lane) {
+        lane.running--;
+        running--;
+    }
+
+    /**
+     * A task handed to the executor, which frees its owner's slot when it ends or is rejected.
+     */
+    final class Launch implements Runnable {
+        private final Lane lane;
+        private final Runnable task;
+
+        private Launch(final Lane lane, final Runnable task) {
+            this.lane = lane;
+            this.task = task;
+        }
+
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                finished(lane);
+            }
+        }
+
+        Runnable getTask() {
+            return task;
+        }
+
+        /**
+         * Called by the executor when it drops this launch. Does not dispatch, the executor is full anyway.
+         */
+        void rejected() {
+            release(lane);
+        }
+    }
+
+    private Lane newLane(final Mod owner) {
+        return new Lane(
+                owner,
+                Math.max(1, weights.getOrDefault(owner.getId(), 1)),
+                Math.max(1, maxConcurrency.getOrDefault(owner.getId(), Integer.MAX_VALUE)));
+    }
+
+    /**
+     * Waiting tasks of one owner, as a ring buffer, with the time each was queued. Guarded by the executor.
+     */
+    private static class Lane {
+        private final Mod owner;
+        private final int weight;
+        private final int maxConcurrency;
+        private Runnable[] tasks = new Runnable[16];
+        private long[] queuedAt = new long[16];
+        private int head;
+        private int size;
+        private int running;
+        private int deficit;
+        private boolean active;
+
+        private Lane(final Mod owner, final int weight, final int maxConcurrency) {
+            this.owner = owner;
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        private void offer(final Runnable task, final long now) {
+            if (size == tasks.length) {
+                final Runnable[] grownTasks = new Runnable[size << 1];
+                final long[] grownQueuedAt = new long[size << 1];
+                for (int i = 0; i < size; i++) {
+                    grownTasks[i] = tasks[(head + i) & (size - 1)];
+                    grownQueuedAt[i] = queuedAt[(head + i) & (size - 1)];
+                }
+                tasks = grownTasks;
+                queuedAt = grownQueuedAt;
+                head = 0;
+            }
+            final int tail = (head + size) & (tasks.length - 1);
+            tasks[tail] = task;
+            queuedAt[tail] = now;
+            size++;
+        }
+
+        private Runnable poll() {
+            final Runnable task = tasks[head];
+            tasks[head] = null;
+            head = (head + 1) & (tasks.length - 1);
+            size--;
+            return task;
+        }
+    }
+}
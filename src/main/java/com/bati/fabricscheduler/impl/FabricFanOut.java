@@ -0,0 +1,49 @@
+package com.bati.fabricscheduler.impl;
+
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.StreamSupport;
+
+/**
+ * Body of a fan-out task. Runs as an async task and collects a parallel stream inside the fan-out pool, so the
+ * stream splits across that pool rather than the common pool. The result goes back through the sync queue.
+ */
+class FabricFanOut<T, R> implements Runnable {
+
+    private final FabricSchedulerImpl scheduler;
+    private final ForkJoinPool pool;
+    private final Spliterator<T> source;
+    private final Collector<? super T, ?, R> collector;
+    private final Consumer<? super R> callback;
+    private FabricTaskImpl task;
+
+    FabricFanOut(final FabricSchedulerImpl scheduler, final ForkJoinPool pool, final Spliterator<T> source, final Collector<? super T, ?, R> collector, final Consumer<? super R> callback) {
+        this.scheduler = scheduler;
+        this.pool = pool;
+        this.source = source;
+        this.collector = collector;
+        this.callback = callback;
+    }
+
+    /**
+     * Set once, before the task is queued
+     */
+    void setTask(final FabricTaskImpl task) {
+        this.task = task;
+    }
+
+    public void run() {
+        final R result = pool.invoke(ForkJoinTask.adapt(() -> StreamSupport.stream(source, true).collect(collector)));
+        if (task.getPeriod() == -2l) {
+            return;
+        }
+        scheduler.runTask(task.getOwner(), () -> {
+            if (task.getPeriod() != -2l) {
+                callback.accept(result);
+            }
+        });
+    }
+}
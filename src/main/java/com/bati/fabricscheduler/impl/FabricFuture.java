@@ -92,6 +92,11 @@ class FabricFuture<T> extends FabricTaskImpl implements Future<T> {
         }
     }
 
+    @Override
+    Class<?> getTaskClass() {
+        return callable.getClass();
+    }
+
     synchronized boolean cancel0() {
         if (getPeriod() != -1l) {
             return false;
@@ -0,0 +1,40 @@
+package com.bati.fabricscheduler.impl;
+
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+
+/**
+ * Runs commands on the main thread with no task bookkeeping: inline when already on it, otherwise at the
+ * next drain point, at the start and at the end of every tick.
+ */
+class FabricMainThreadExecutor implements Executor {
+
+    private final FabricMpscQueue<Runnable> queue = new FabricMpscQueue<Runnable>(256);
+    private volatile Thread mainThread;
+
+    public void execute(final Runnable command) {
+        if (command == null) {
+            throw new NullPointerException("Command cannot be null");
+        }
+        if (Thread.currentThread() == mainThread) {
+            command.run();
+        } else {
+            queue.offer(command);
+        }
+    }
+
+    /**
+     * Main thread only. Also records the calling thread as the main thread.
+     */
+    void drain() {
+        mainThread = Thread.currentThread();
+        Runnable command;
+        while ((command = queue.poll()) != null) {
+            try {
+                command.run();
+            } catch (final Throwable throwable) {
+                FabricSchedulerImpl.LOGGER.log(Level.WARNING, "Main thread executor command generated an exception", throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.bati.fabricscheduler.impl;
+
+/**
+ * Clock whose ticks only move when told to, for running the scheduler without a server.
+ */
+public class FabricManualTickClock implements FabricTickClock {
+
+    private volatile int tick;
+
+    public FabricManualTickClock() {
+        this(0);
+    }
+
+    public FabricManualTickClock(final int tick) {
+        this.tick = tick;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public void setTick(final int tick) {
+        this.tick = tick;
+    }
+
+    /**
+     * Moves to the next tick. Only the thread driving the heartbeat should call this.
+     *
+     * @return the new tick
+     */
+    public int advance() {
+        return ++tick;
+    }
+}
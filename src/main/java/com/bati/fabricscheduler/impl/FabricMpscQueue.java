@@ -0,0 +1,137 @@
+package com.bati.fabricscheduler.impl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Unbounded multi-producer single-consumer queue stored in linked array chunks.
+ * <p>
+ * A producer claims an index with one atomic increment, shared by a whole batch, then writes its slot;
+ * a new chunk is linked once per chunk size elements rather than a node per element. Only the consumer
+ * thread may call {@link #poll()} and {@link #drain(Consumer)}. An element whose slot is claimed but not
+ * written yet stops the consumer until the next drain, so the order of claims is kept.
+ */
+class FabricMpscQueue<E> {
+
+    private static final class Chunk<E> {
+        private final long base;
+        private final AtomicReferenceArray<E> slots;
+        private final AtomicReference<Chunk<E>> next = new AtomicReference<Chunk<E>>();
+
+        private Chunk(final long base, final int size) {
+            this.base = base;
+            this.slots = new AtomicReferenceArray<E>(size);
+        }
+    }
+
+    private final int chunkSize;
+    private final AtomicLong producerIndex = new AtomicLong();
+    /**
+     * Chunk of a recently claimed index, only moves forward. Producers start looking for their chunk here
+     */
+    private final AtomicReference<Chunk<E>> producerChunk;
+    /**
+     * Consumer only
+     */
+    private Chunk<E> consumerChunk;
+    private long consumerIndex;
+
+    /**
+     * @param chunkSize elements per chunk, rounded up to a power of two
+     */
+    FabricMpscQueue(final int chunkSize) {
+        int size = 1;
+        while (size < chunkSize) {
+            size <<= 1;
+        }
+        this.chunkSize = size;
+        this.consumerChunk = new Chunk<E>(0, size);
+        this.producerChunk = new AtomicReference<Chunk<E>>(consumerChunk);
+    }
+
+    void offer(final E value) {
+        // Read before claiming, so its base can't be past the claimed index
+        final Chunk<E> hint = producerChunk.get();
+        final long index = producerIndex.getAndIncrement();
+        final Chunk<E> chunk = chunkFor(hint, index);
+        chunk.slots.set((int) (index - chunk.base), value);
+    }
+
+    /**
+     * Adds the values in order, claiming their indexes at once.
+     */
+    void offerAll(final List<? extends E> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        final Chunk<E> hint = producerChunk.get();
+        long index = producerIndex.getAndAdd(values.size());
+        Chunk<E> chunk = hint;
+        for (E value : values) {
+            chunk = chunkFor(chunk, index);
+            chunk.slots.set((int) (index - chunk.base), value);
+            index++;
+        }
+    }
+
+    /**
+     * @return the oldest element, or null if empty or the oldest claimed slot is not written yet
+     */
+    E poll() {
+        Chunk<E> chunk = consumerChunk;
+        int offset = (int) (consumerIndex - chunk.base);
+        if (offset == chunkSize) {
+            final Chunk<E> next = chunk.next.get();
+            if (next == null) {
+                return null;
+            }
+            consumerChunk = chunk = next;
+            offset = 0;
+        }
+        final E value = chunk.slots.get(offset);
+        if (value == null) {
+            return null;
+        }
+        chunk.slots.lazySet(offset, null);
+        consumerIndex++;
+        return value;
+    }
+
+    /**
+     * Passes every element that is ready to the action, oldest first.
+     *
+     * @return the number of elements drained
+     */
+    int drain(final Consumer<? super E> action) {
+        int count = 0;
+        E value;
+        while ((value = poll()) != null) {
+            action.accept(value);
+            count++;
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return consumerIndex == producerIndex.get();
+    }
+
+    private Chunk<E> chunkFor(Chunk<E> chunk, final long index) {
+        while (index >= chunk.base + chunkSize) {
+            Chunk<E> next = chunk.next.get();
+            if (next == null) {
+                final Chunk<E> created = new Chunk<E>(chunk.base + chunkSize, chunkSize);
+                next = chunk.next.compareAndSet(null, created) ? created : chunk.next.get();
+            }
+            chunk = next;
+        }
+        Chunk<E> hint;
+        while ((hint = producerChunk.get()).base < chunk.base && !producerChunk.compareAndSet(hint, chunk)) {
+            // Retry
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,106 @@
+package com.bati.fabricscheduler.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the first run of repeating sync tasks so tasks with the same period
+ * don't all land on the same tick. Main thread logic only.
+ * <p>
+ * For every period in use, the expected cost of each phase ({@code tick % period})
+ * is the sum of the costs of the tasks running in it. A new task is delayed by
+ * less than one period, to the first phase with the lowest cost. The cost of a
+ * task starts as the average of its task class, and follows its measured run
+ * time afterwards.
+ */
+class FabricPhaseSpreader {
+
+    /**
+     * Longer periods are left alone, they rarely pile up and would need large tables
+     */
+    static final long MAX_PERIOD = 1200l;
+    /**
+     * Cost of a task whose class never ran, in nanoseconds
+     */
+    private static final long DEFAULT_COST = 1000l;
+    /**
+     * Weight of the latest run in the cost of a task, as a shift
+     */
+    private static final int COST_SMOOTHING = 3;
+
+    private final FabricTaskProfiler profiler;
+    /**
+     * Expected cost of every phase, by period
+     */
+    private final Map<Long, long[]> loads = new HashMap<Long, long[]>();
+    /**
+     * Spread tasks, by period
+     */
+    private final Map<Long, Integer> counts = new HashMap<Long, Integer>();
+
+    FabricPhaseSpreader(final FabricTaskProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Delays the first run of a newly queued task to the cheapest phase of its period.
+     *
+     * @param tick the current tick, overdue tasks run on it
+     */
+    void place(final FabricTaskImpl task, final long tick) {
+        final long period = task.getPeriod();
+        if (period <= 0 || period > MAX_PERIOD || task.getMaxPeriod() > period) {
+            return;
+        }
+        final long[] load = loads.computeIfAbsent(period, key -> new long[(int) key.longValue()]);
+        final long nextRun = Math.max(task.getNextRun(), tick);
+        int best = 0;
+        for (int shift = 1; shift < period; shift++) {
+            if (load[phase(nextRun + shift, period)] < load[phase(nextRun + best, period)]) {
+                best = shift;
+            }
+        }
+        final double average = profiler.getAverageNanos(task.getTaskClass());
+        final long cost = average > 0 ? (long) average : DEFAULT_COST;
+        task.setNextRun(nextRun + best);
+        task.setSpread(period, phase(nextRun + best, period), cost);
+        load[task.getSpreadPhase()] += cost;
+        counts.merge(period, 1, Integer::sum);
+    }
+
+    /**
+     * Accounts a run of the task, which is in another phase if it ran late.
+     */
+    void ran(final FabricTaskImpl task, final long tick, final long nanos) {
+        final long period = task.getSpreadPeriod();
+        if (period == 0) {
+            return;
+        }
+        if (task.getPeriod() <= 0) {
+            remove(task);
+            return;
+        }
+        final long[] load = loads.get(period);
+        final long cost = task.getSpreadCost() + ((Math.max(0l, nanos) - task.getSpreadCost()) >> COST_SMOOTHING);
+        load[task.getSpreadPhase()] -= task.getSpreadCost();
+        task.setSpread(period, phase(tick, period), cost);
+        load[task.getSpreadPhase()] += cost;
+    }
+
+    void remove(final FabricTaskImpl task) {
+        final long period = task.getSpreadPeriod();
+        if (period == 0) {
+            return;
+        }
+        loads.get(period)[task.getSpreadPhase()] -= task.getSpreadCost();
+        task.setSpread(0l, 0, 0l);
+        if (counts.merge(period, -1, Integer::sum) == 0) {
+            counts.remove(period);
+            loads.remove(period);
+        }
+    }
+
+    private static int phase(final long tick, final long period) {
+        return (int) Math.floorMod(tick, period);
+    }
+}
@@ -0,0 +1,416 @@
+package com.bati.fabricscheduler.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tuning knobs of {@link FabricSchedulerImpl}. Read once when the scheduler is created.
+ */
+public class FabricSchedulerConfig {
+
+    /**
+     * What happens to an async task when the async queue is full
+     */
+    public enum RejectionPolicy {
+        /**
+         * Run the task on the thread that launched it, usually the main thread. Wall-clock timers are deferred
+         * instead, so they don't hold the timer thread
+         */
+        CALLER_RUNS,
+        /**
+         * Drop this execution of the task and log it as failed
+         */
+        FAIL,
+        /**
+         * Try to launch the task again on the next tick
+         */
+        DEFER
+    }
+
+    private int asyncCoreThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int asyncMaxThreads = Math.max(64, asyncCoreThreads);
+    private int asyncQueueCapacity = 4096;
+    private long asyncKeepAliveSeconds = 60;
+    private RejectionPolicy asyncRejectionPolicy = RejectionPolicy.DEFER;
+    private boolean asyncVirtualThreads = false;
+    private int asyncMaxVirtualThreads = 10000;
+    private boolean asyncFairShare = false;
+    private Map<String, Integer> asyncModWeights = Collections.emptyMap();
+    private Map<String, Integer> asyncModMaxConcurrency = Collections.emptyMap();
+    private long syncTickBudgetMicros = 0;
+    private int syncMaxDeferTicks = 20;
+    private long syncBackgroundBudgetMicros = 0;
+    private long elasticTargetTickMillis = 50;
+    private boolean syncSpreadTimers = false;
+    private int fanOutParallelism = Runtime.getRuntime().availableProcessors();
+    private long watchdogSyncThresholdMillis = 300;
+    private long watchdogAsyncThresholdMillis = 0;
+    private String metricsPrometheusFile = "";
+    private long metricsPrometheusIntervalSeconds = 15;
+
+    public int getAsyncCoreThreads() {
+        return asyncCoreThreads;
+    }
+
+    public void setAsyncCoreThreads(int asyncCoreThreads) {
+        this.asyncCoreThreads = asyncCoreThreads;
+    }
+
+    public int getAsyncMaxThreads() {
+        return asyncMaxThreads;
+    }
+
+    public void setAsyncMaxThreads(int asyncMaxThreads) {
+        this.asyncMaxThreads = asyncMaxThreads;
+    }
+
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+        this.asyncQueueCapacity = asyncQueueCapacity;
+    }
+
+    public long getAsyncKeepAliveSeconds() {
+        return asyncKeepAliveSeconds;
+    }
+
+    public void setAsyncKeepAliveSeconds(long asyncKeepAliveSeconds) {
+        this.asyncKeepAliveSeconds = asyncKeepAliveSeconds;
+    }
+
+    public RejectionPolicy getAsyncRejectionPolicy() {
+        return asyncRejectionPolicy;
+    }
+
+    public void setAsyncRejectionPolicy(RejectionPolicy asyncRejectionPolicy) {
+        this.asyncRejectionPolicy = asyncRejectionPolicy;
+    }
+
+    /**
+     * @return true if async tasks should run on virtual threads, when the runtime supports them (Java 21+)
+     */
+    public boolean isAsyncVirtualThreads() {
+        return asyncVirtualThreads;
+    }
+
+    public void setAsyncVirtualThreads(boolean asyncVirtualThreads) {
+        this.asyncVirtualThreads = asyncVirtualThreads;
+    }
+
+    /**
+     * @return the most async tasks running at once on virtual threads, before the rejection policy applies
+     */
+    public int getAsyncMaxVirtualThreads() {
+        return asyncMaxVirtualThreads;
+    }
+
+    public void setAsyncMaxVirtualThreads(int asyncMaxVirtualThreads) {
+        this.asyncMaxVirtualThreads = asyncMaxVirtualThreads;
+    }
+
+    /**
+     * @return true if async tasks wait in a queue per mod, and the mods take turns launching them
+     */
+    public boolean isAsyncFairShare() {
+        return asyncFairShare;
+    }
+
+    public void setAsyncFairShare(boolean asyncFairShare) {
+        this.asyncFairShare = asyncFairShare;
+    }
+
+    /**
+     * @return async tasks a mod launches per turn under fair share, by mod id. Mods not listed have a weight of 1
+     */
+    public Map<String, Integer> getAsyncModWeights() {
+        return asyncModWeights;
+    }
+
+    public void setAsyncModWeights(Map<String, Integer> asyncModWeights) {
+        this.asyncModWeights = asyncModWeights;
+    }
+
+    /**
+     * @return the most async tasks of a mod running at once under fair share, by mod id. Mods not listed have no
+     *     limit of their own
+     */
+    public Map<String, Integer> getAsyncModMaxConcurrency() {
+        return asyncModMaxConcurrency;
+    }
+
+    public void setAsyncModMaxConcurrency(Map<String, Integer> asyncModMaxConcurrency) {
+        this.asyncModMaxConcurrency = asyncModMaxConcurrency;
+    }
+
+    /**
+     * @return main thread time per tick for sync tasks, in microseconds. 0 means unlimited
+     */
+    public long getSyncTickBudgetMicros() {
+        return syncTickBudgetMicros;
+    }
+
+    public void setSyncTickBudgetMicros(long syncTickBudgetMicros) {
+        this.syncTickBudgetMicros = syncTickBudgetMicros;
+    }
+
+    /**
+     * @return ticks a due sync task can be carried over before it runs regardless of the budget
+     */
+    public int getSyncMaxDeferTicks() {
+        return syncMaxDeferTicks;
+    }
+
+    public void setSyncMaxDeferTicks(int syncMaxDeferTicks) {
+        this.syncMaxDeferTicks = syncMaxDeferTicks;
+    }
+
+    /**
+     * @return main thread time per tick after which BACKGROUND sync tasks are carried over, in microseconds.
+     *     0 means only the tick budget applies
+     */
+    public long getSyncBackgroundBudgetMicros() {
+        return syncBackgroundBudgetMicros;
+    }
+
+    public void setSyncBackgroundBudgetMicros(long syncBackgroundBudgetMicros) {
+        this.syncBackgroundBudgetMicros = syncBackgroundBudgetMicros;
+    }
+
+    /**
+     * @return true if the first run of repeating sync tasks may be delayed, by less than one period, to the tick
+     *     with the lowest expected cost among the tasks of the same period
+     */
+    public boolean isSyncSpreadTimers() {
+        return syncSpreadTimers;
+    }
+
+    public void setSyncSpreadTimers(boolean syncSpreadTimers) {
+        this.syncSpreadTimers = syncSpreadTimers;
+    }
+
+    /**
+     * @return tick duration, in milliseconds, above which elastic timers are stretched
+     */
+    public long getElasticTargetTickMillis() {
+        return elasticTargetTickMillis;
+    }
+
+    public void setElasticTargetTickMillis(long elasticTargetTickMillis) {
+        this.elasticTargetTickMillis = elasticTargetTickMillis;
+    }
+
+    /**
+     * @return threads of the fork-join pool splitting fan-out tasks
+     */
+    public int getFanOutParallelism() {
+        return fanOutParallelism;
+    }
+
+    public void setFanOutParallelism(int fanOutParallelism) {
+        this.fanOutParallelism = fanOutParallelism;
+    }
+
+    /**
+     * @return milliseconds a sync task can run before it is reported with its stack, 0 to not watch sync tasks
+     */
+    public long getWatchdogSyncThresholdMillis() {
+        return watchdogSyncThresholdMillis;
+    }
+
+    public void setWatchdogSyncThresholdMillis(long watchdogSyncThresholdMillis) {
+        this.watchdogSyncThresholdMillis = watchdogSyncThresholdMillis;
+    }
+
+    /**
+     * @return milliseconds an async run can take before it is reported with its stack, 0 to not watch async tasks.
+     *     Off by default, watching adds a map update to the start and end of every async run
+     */
+    public long getWatchdogAsyncThresholdMillis() {
+        return watchdogAsyncThresholdMillis;
+    }
+
+    public void setWatchdogAsyncThresholdMillis(long watchdogAsyncThresholdMillis) {
+        this.watchdogAsyncThresholdMillis = watchdogAsyncThresholdMillis;
+    }
+
+    /**
+     * @return file the metrics are written to in the Prometheus text format, empty to not write them
+     */
+    public String getMetricsPrometheusFile() {
+        return metricsPrometheusFile;
+    }
+
+    public void setMetricsPrometheusFile(String metricsPrometheusFile) {
+        this.metricsPrometheusFile = metricsPrometheusFile;
+    }
+
+    public long getMetricsPrometheusIntervalSeconds() {
+        return metricsPrometheusIntervalSeconds;
+    }
+
+    public void setMetricsPrometheusIntervalSeconds(long metricsPrometheusIntervalSeconds) {
+        this.metricsPrometheusIntervalSeconds = metricsPrometheusIntervalSeconds;
+    }
+
+    /**
+     * Reads the config from a properties file. Keys missing from the file are written back with their default
+     * value, so the file always lists every option. Malformed values keep their default.
+     *
+     * @param file the properties file
+     * @param logger where problems with the file are reported
+     * @return the config
+     */
+    public static FabricSchedulerConfig load(final Path file, final Logger logger) {
+        final FabricSchedulerConfig config = new FabricSchedulerConfig();
+        final Properties properties = config.toProperties();
+        try {
+            final Properties stored = new Properties();
+            if (Files.exists(file)) {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    stored.load(reader);
+                }
+            }
+            final boolean complete = stored.keySet().containsAll(properties.keySet());
+            properties.putAll(stored);
+            if (!complete) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    properties.store(writer, "Fabric Scheduler");
+                }
+            }
+        } catch (final IOException e) {
+            logger.log(Level.WARNING, "Could not read scheduler config " + file + ", using defaults", e);
+        }
+        config.asyncCoreThreads = getInt(properties, "async.coreThreads", config.asyncCoreThreads, logger);
+        config.asyncMaxThreads = getInt(properties, "async.maxThreads", config.asyncMaxThreads, logger);
+        config.asyncQueueCapacity = getInt(properties, "async.queueCapacity", config.asyncQueueCapacity, logger);
+        config.asyncKeepAliveSeconds = getLong(properties, "async.keepAliveSeconds", config.asyncKeepAliveSeconds, logger);
+        config.asyncRejectionPolicy = getEnum(properties, "async.rejectionPolicy", config.asyncRejectionPolicy, logger);
+        config.asyncVirtualThreads = getBoolean(properties, "async.virtualThreads", config.asyncVirtualThreads);
+        config.asyncMaxVirtualThreads = getInt(properties, "async.maxVirtualThreads", config.asyncMaxVirtualThreads, logger);
+        config.asyncFairShare = getBoolean(properties, "async.fairShare", config.asyncFairShare);
+        config.asyncModWeights = getIntMap(properties, "async.modWeights", config.asyncModWeights, logger);
+        config.asyncModMaxConcurrency = getIntMap(properties, "async.modMaxConcurrency", config.asyncModMaxConcurrency, logger);
+        config.syncTickBudgetMicros = getLong(properties, "sync.tickBudgetMicros", config.syncTickBudgetMicros, logger);
+        config.syncMaxDeferTicks = getInt(properties, "sync.maxDeferTicks", config.syncMaxDeferTicks, logger);
+        config.syncBackgroundBudgetMicros = getLong(properties, "sync.backgroundBudgetMicros", config.syncBackgroundBudgetMicros, logger);
+        config.syncSpreadTimers = getBoolean(properties, "sync.spreadTimers", config.syncSpreadTimers);
+        config.elasticTargetTickMillis = getLong(properties, "elastic.targetTickMillis", config.elasticTargetTickMillis, logger);
+        config.fanOutParallelism = getInt(properties, "fanOut.parallelism", config.fanOutParallelism, logger);
+        config.watchdogSyncThresholdMillis = getLong(properties, "watchdog.syncThresholdMillis", config.watchdogSyncThresholdMillis, logger);
+        config.watchdogAsyncThresholdMillis = getLong(properties, "watchdog.asyncThresholdMillis", config.watchdogAsyncThresholdMillis, logger);
+        config.metricsPrometheusFile = properties.getProperty("metrics.prometheusFile", config.metricsPrometheusFile).trim();
+        config.metricsPrometheusIntervalSeconds = getLong(properties, "metrics.prometheusIntervalSeconds", config.metricsPrometheusIntervalSeconds, logger);
+        return config;
+    }
+
+    private Properties toProperties() {
+        final Properties properties = new Properties();
+        properties.setProperty("async.coreThreads", Integer.toString(asyncCoreThreads));
+        properties.setProperty("async.maxThreads", Integer.toString(asyncMaxThreads));
+        properties.setProperty("async.queueCapacity", Integer.toString(asyncQueueCapacity));
+        properties.setProperty("async.keepAliveSeconds", Long.toString(asyncKeepAliveSeconds));
+        properties.setProperty("async.rejectionPolicy", asyncRejectionPolicy.name());
+        properties.setProperty("async.virtualThreads", Boolean.toString(asyncVirtualThreads));
+        properties.setProperty("async.maxVirtualThreads", Integer.toString(asyncMaxVirtualThreads));
+        properties.setProperty("async.fairShare", Boolean.toString(asyncFairShare));
+        properties.setProperty("async.modWeights", toString(asyncModWeights));
+        properties.setProperty("async.modMaxConcurrency", toString(asyncModMaxConcurrency));
+        properties.setProperty("sync.tickBudgetMicros", Long.toString(syncTickBudgetMicros));
+        properties.setProperty("sync.maxDeferTicks", Integer.toString(syncMaxDeferTicks));
+        properties.setProperty("sync.backgroundBudgetMicros", Long.toString(syncBackgroundBudgetMicros));
+        properties.setProperty("sync.spreadTimers", Boolean.toString(syncSpreadTimers));
+        properties.setProperty("elastic.targetTickMillis", Long.toString(elasticTargetTickMillis));
+        properties.setProperty("fanOut.parallelism", Integer.toString(fanOutParallelism));
+        properties.setProperty("watchdog.syncThresholdMillis", Long.toString(watchdogSyncThresholdMillis));
+        properties.setProperty("watchdog.asyncThresholdMillis", Long.toString(watchdogAsyncThresholdMillis));
+        properties.setProperty("metrics.prometheusFile", metricsPrometheusFile);
+        properties.setProperty("metrics.prometheusIntervalSeconds", Long.toString(metricsPrometheusIntervalSeconds));
+        return properties;
+    }
+
+    private static boolean getBoolean(final Properties properties, final String key, final boolean def) {
+        final String value = properties.getProperty(key);
+        return value == null ? def : Boolean.parseBoolean(value.trim());
+    }
+
+    private static int getInt(final Properties properties, final String key, final int def, final Logger logger) {
+        return (int) getLong(properties, key, def, logger);
+    }
+
+    private static long getLong(final Properties properties, final String key, final long def, final Logger logger) {
+        final String value = properties.getProperty(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            logger.warning(String.format("Invalid value '%s' for %s, using %s", value, key, def));
+            return def;
+        }
+    }
+
+    /**
+     * Reads a comma separated list of {@code key=value} pairs. Malformed pairs are skipped.
+     */
+    private static Map<String, Integer> getIntMap(final Properties properties, final String key, final Map<String, Integer> def, final Logger logger) {
+        final String value = properties.getProperty(key);
+        if (value == null) {
+            return def;
+        }
+        final Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        for (String pair : value.split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            final int separator = pair.indexOf('=');
+            try {
+                if (separator <= 0) {
+                    throw new NumberFormatException();
+                }
+                map.put(pair.substring(0, separator).trim(), Integer.parseInt(pair.substring(separator + 1).trim()));
+            } catch (final NumberFormatException e) {
+                logger.warning(String.format("Invalid entry '%s' for %s, skipping it", pair.trim(), key));
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static String toString(final Map<String, Integer> map) {
+        final StringBuilder string = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            if (string.length() > 0) {
+                string.append(',');
+            }
+            string.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return string.toString();
+    }
+
+    private static <E extends Enum<E>> E getEnum(final Properties properties, final String key, final E def, final Logger logger) {
+        final String value = properties.getProperty(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Enum.valueOf(def.getDeclaringClass(), value.trim().toUpperCase(Locale.ROOT));
+        } catch (final IllegalArgumentException e) {
+            logger.warning(String.format("Invalid value '%s' for %s, using %s", value, key, def));
+            return def;
+        }
+    }
+}
@@ -4,56 +4,176 @@ import com.bati.fabricscheduler.Mod;
 import com.bati.fabricscheduler.model.FabricRunnable;
 import com.bati.fabricscheduler.model.FabricScheduler;
 import com.bati.fabricscheduler.model.FabricTask;
+import com.bati.fabricscheduler.model.FabricTaskTimings;
 import com.bati.fabricscheduler.model.FabricWorker;
+import com.bati.fabricscheduler.model.OverlapPolicy;
+import com.bati.fabricscheduler.model.TaskPriority;
 import org.apache.commons.lang3.Validate;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collector;
 
 public class FabricSchedulerImpl implements FabricScheduler {
 
+    static final Logger LOGGER = Logger.getLogger("fabric-scheduler");
+
     /**
      * Counter for IDs. Order doesn't matter, only uniqueness.
      */
     private final AtomicInteger ids = new AtomicInteger(1);
     /**
-     * Current head of linked-list. This reference is always stale, {@link FabricTaskImpl#next} is the live reference.
+     * Submitted tasks, moved to {@link #pending} by the main thread
      */
-    private volatile FabricTaskImpl head = new FabricTaskImpl();
+    private final FabricMpscQueue<FabricTaskImpl> incoming = new FabricMpscQueue<FabricTaskImpl>(1024);
     /**
-     * Tail of a linked-list. AtomicReference only matters when adding to queue
+     * Control messages such as cancelling every task, run by the main thread before the incoming tasks
      */
-    private final AtomicReference<FabricTaskImpl> tail = new AtomicReference<FabricTaskImpl>(head);
+    private final FabricMpscQueue<Runnable> controls = new FabricMpscQueue<Runnable>(16);
     /**
      * Main thread logic only
      */
-    private final PriorityQueue<FabricTaskImpl> pending = new PriorityQueue<FabricTaskImpl>(10,
-            new Comparator<FabricTaskImpl>() {
-                public int compare(final FabricTaskImpl o1, final FabricTaskImpl o2) {
-                    return (int) (o1.getNextRun() - o2.getNextRun());
-                }
-            });
+    private final FabricTimingWheel pending = new FabricTimingWheel(-1);
     /**
-     * Main thread logic only
+     * Main thread logic only, sync tasks carried over by the running heartbeat, put back into {@link #pending}
+     * when it ends
      */
-    private final List<FabricTaskImpl> temp = new ArrayList<>();
+    private final ArrayList<FabricTaskImpl> carried = new ArrayList<FabricTaskImpl>();
     /**
      * These are tasks that are currently active. It's provided for 'viewing' the current state.
      */
-    private final ConcurrentHashMap<Integer, FabricTaskImpl> runners = new ConcurrentHashMap<Integer, FabricTaskImpl>();
+    private final FabricTaskRegistry runners = new FabricTaskRegistry();
+    /**
+     * Keyed tasks that have not started yet
+     */
+    private final ConcurrentHashMap<FabricTaskKey, FabricCoalescingRunnable> coalescing = new ConcurrentHashMap<FabricTaskKey, FabricCoalescingRunnable>();
+    private final FabricTaskProfiler profiler;
+    private final FabricSchedulerMetrics metrics;
+    /**
+     * Null unless a watchdog threshold is configured
+     */
+    private final FabricWatchdog watchdog;
+    private final FabricTickClock clock;
     private volatile int currentTick = -1;
-    private final Executor executor = Executors.newCachedThreadPool();
-    private FabricAsyncDebugger debugHead = new FabricAsyncDebugger(-1, null, null) {@Override StringBuilder debugTo(StringBuilder string) {return string;}};
-    private FabricAsyncDebugger debugTail = debugHead;
+    private final FabricAsyncExecutor executor;
+    /**
+     * Null unless async tasks are queued per mod
+     */
+    private final FabricFairShareExecutor fairShare;
+    /**
+     * Where async tasks are launched, the fair share queues when enabled, otherwise the executor
+     */
+    private final Executor launcher;
+    private final FabricMainThreadExecutor mainThreadExecutor = new FabricMainThreadExecutor();
+    /**
+     * Launches wall-clock async tasks, independently of the heartbeat
+     */
+    private final ScheduledThreadPoolExecutor timers;
+    /**
+     * Splits the work of fan-out tasks
+     */
+    private final ForkJoinPool fanOutPool;
+    /**
+     * Main thread time for sync tasks per heartbeat, in nanoseconds. 0 means unlimited
+     */
+    private final long syncTickBudget;
+    /**
+     * Main thread time per heartbeat after which BACKGROUND tasks are carried over, in nanoseconds. 0 means unlimited
+     */
+    private final long syncBackgroundBudget;
+    private final int syncMaxDeferTicks;
+    private volatile int deferredTasks;
+    /**
+     * Null unless repeating sync tasks are spread over their period
+     */
+    private final FabricPhaseSpreader spreader;
+    /**
+     * Tick duration at which elastic timers keep their period, in nanoseconds
+     */
+    private final long elasticTargetTick;
+    /**
+     * Moving average of the tick duration in nanoseconds, main thread only
+     */
+    private double averageTick;
+    private long tickStartNanos;
+    private long lastHeartbeatNanos;
+    private volatile double elasticStretch = 1d;
+    /**
+     * Weight of the latest tick in {@link #averageTick}, about the last 20 ticks matter
+     */
+    private static final double TICK_SMOOTHING = 0.1d;
+    /**
+     * Async launches kept for {@link #toString()}, older ones are overwritten even if they are recent
+     */
+    private static final int DEBUG_CAPACITY = 1024;
+    private final FabricAsyncDebugger debugger = new FabricAsyncDebugger(DEBUG_CAPACITY);
     private static final int RECENT_TICKS;
 
     static {
         RECENT_TICKS = 30;
     }
 
+    public FabricSchedulerImpl() {
+        this(new FabricSchedulerConfig());
+    }
+
+    public FabricSchedulerImpl(final FabricSchedulerConfig config) {
+        this(config, new FabricManualTickClock());
+    }
+
+    /**
+     * @param config tuning of the scheduler
+     * @param clock where {@link #heartbeat()} reads the current tick, and tasks are timed
+     */
+    public FabricSchedulerImpl(final FabricSchedulerConfig config, final FabricTickClock clock) {
+        Validate.notNull(clock, "Clock cannot be null");
+        this.clock = clock;
+        this.metrics = new FabricSchedulerMetrics(this);
+        this.profiler = new FabricTaskProfiler(clock, metrics);
+        this.spreader = config.isSyncSpreadTimers() ? new FabricPhaseSpreader(profiler) : null;
+        this.executor = new FabricAsyncExecutor(config);
+        this.fairShare = config.isAsyncFairShare() ? new FabricFairShareExecutor(executor, clock, config) : null;
+        this.launcher = fairShare == null ? executor : fairShare;
+        this.syncTickBudget = TimeUnit.MICROSECONDS.toNanos(Math.max(0, config.getSyncTickBudgetMicros()));
+        this.syncMaxDeferTicks = Math.max(0, config.getSyncMaxDeferTicks());
+        this.syncBackgroundBudget = TimeUnit.MICROSECONDS.toNanos(Math.max(0, config.getSyncBackgroundBudgetMicros()));
+        this.elasticTargetTick = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getElasticTargetTickMillis()));
+        this.timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "Fabric Scheduler Timer Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timers.setRemoveOnCancelPolicy(true);
+        if (!config.getMetricsPrometheusFile().isEmpty()) {
+            final Path file = Paths.get(config.getMetricsPrometheusFile());
+            final long interval = Math.max(1l, config.getMetricsPrometheusIntervalSeconds());
+            timers.scheduleWithFixedDelay(() -> metrics.writePrometheus(file), interval, interval, TimeUnit.SECONDS);
+        }
+        final long watchdogSync = TimeUnit.MILLISECONDS.toNanos(Math.max(0l, config.getWatchdogSyncThresholdMillis()));
+        final long watchdogAsync = TimeUnit.MILLISECONDS.toNanos(Math.max(0l, config.getWatchdogAsyncThresholdMillis()));
+        this.watchdog = watchdogSync > 0 || watchdogAsync > 0 ? new FabricWatchdog(runners, clock, watchdogSync, watchdogAsync) : null;
+        this.fanOutPool = new ForkJoinPool(
+                Math.max(1, config.getFanOutParallelism()),
+                new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                    private final AtomicInteger threads = new AtomicInteger();
+
+                    public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+                        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("Fabric Scheduler Fan-out Thread - " + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                null,
+                false);
+    }
+
     public int scheduleSyncDelayedTask(final Mod mod, final Runnable task) {
         return this.scheduleSyncDelayedTask(mod, task, 0l);
     }
@@ -93,6 +213,21 @@ public class FabricSchedulerImpl implements FabricScheduler {
     }
 
     public FabricTask runTaskTimer(Mod mod, Runnable runnable, long delay, long period) {
+        return runTaskTimer(mod, runnable, delay, period, null);
+    }
+
+    public FabricTask runTask(final Mod mod, final Runnable runnable, final TaskPriority priority) {
+        return runTaskLater(mod, runnable, 0l, priority);
+    }
+
+    public FabricTask runTaskLater(final Mod mod, final Runnable runnable, final long delay, final TaskPriority priority) {
+        return runTaskTimer(mod, runnable, delay, -1l, priority);
+    }
+
+    /**
+     * @param priority null to use the priority of a {@link FabricRunnable}, or NORMAL
+     */
+    public FabricTask runTaskTimer(final Mod mod, final Runnable runnable, long delay, long period, final TaskPriority priority) {
         validate(mod, runnable);
         if (delay < 0l) {
             delay = 0;
@@ -102,7 +237,11 @@ public class FabricSchedulerImpl implements FabricScheduler {
         } else if (period < -1l) {
             period = -1l;
         }
-        return handle(new FabricTaskImpl(mod, runnable, nextId(), period), delay);
+        final FabricTaskImpl task = new FabricTaskImpl(mod, runnable, nextId(), period);
+        if (priority != null) {
+            task.setPriority(priority);
+        }
+        return handle(task, delay);
     }
 
     @Deprecated
@@ -110,8 +249,35 @@ public class FabricSchedulerImpl implements FabricScheduler {
         return runTaskTimerAsynchronously(mod, runnable, delay, period).getTaskId();
     }
 
+    public FabricTask runTaskTimerElastic(final Mod mod, final Runnable runnable, final long delay, final long period, final long maxPeriod) {
+        validate(mod, runnable);
+        Validate.isTrue(period > 0, "Period must be positive");
+        Validate.isTrue(maxPeriod >= period, "Max period cannot be less than the period");
+        final FabricTaskImpl task = new FabricTaskImpl(mod, runnable, nextId(), period);
+        task.setMaxPeriod(maxPeriod);
+        return handle(task, Math.max(0l, delay));
+    }
+
+    public FabricTask runTaskTimerElasticAsynchronously(final Mod mod, final Runnable runnable, final long delay, final long period, final long maxPeriod) {
+        validate(mod, runnable);
+        Validate.isTrue(period > 0, "Period must be positive");
+        Validate.isTrue(maxPeriod >= period, "Max period cannot be less than the period");
+        final FabricTaskImpl task = new FabricAsyncTask(runners, profiler, mod, runnable, nextId(), period);
+        task.setMaxPeriod(maxPeriod);
+        return handle(task, Math.max(0l, delay));
+    }
+
+    public double getElasticStretchFactor() {
+        return elasticStretch;
+    }
+
     public FabricTask runTaskTimerAsynchronously(Mod mod, Runnable runnable, long delay, long period) {
+        return runTaskTimerAsynchronously(mod, runnable, delay, period, OverlapPolicy.ALLOW);
+    }
+
+    public FabricTask runTaskTimerAsynchronously(final Mod mod, final Runnable runnable, long delay, long period, final OverlapPolicy overlapPolicy) {
         validate(mod, runnable);
+        Validate.notNull(overlapPolicy, "Overlap policy cannot be null");
         if (delay < 0l) {
             delay = 0;
         }
@@ -120,7 +286,124 @@ public class FabricSchedulerImpl implements FabricScheduler {
         } else if (period < -1l) {
             period = -1l;
         }
-        return handle(new FabricAsyncTask(runners, mod, runnable, nextId(), period), delay);
+        final FabricAsyncTask task = new FabricAsyncTask(runners, profiler, mod, runnable, nextId(), period);
+        task.setOverlapPolicy(overlapPolicy);
+        return handle(task, delay);
+    }
+
+    public FabricTask runTaskLater(final Mod mod, final Object key, final Runnable runnable, final long delay) {
+        return runTaskLater(mod, key, runnable, delay, false);
+    }
+
+    public FabricTask runTaskLaterAsynchronously(final Mod mod, final Object key, final Runnable runnable, final long delay) {
+        return runTaskLater(mod, key, runnable, delay, true);
+    }
+
+    private FabricTask runTaskLater(final Mod mod, final Object key, final Runnable runnable, long delay, final boolean async) {
+        validate(mod, runnable);
+        Validate.notNull(key, "Key cannot be null");
+        if (delay < 0l) {
+            delay = 0;
+        }
+        final FabricTaskKey taskKey = new FabricTaskKey(mod, key);
+        while (true) {
+            final FabricCoalescingRunnable current = coalescing.get(taskKey);
+            if (current != null) {
+                if (current.replace(runnable)) {
+                    return current.getTask();
+                }
+                // Started or cancelled, it no longer owns the key
+                coalescing.remove(taskKey, current);
+                continue;
+            }
+            final FabricCoalescingRunnable coalesced = new FabricCoalescingRunnable(coalescing, taskKey, runnable);
+            final FabricTaskImpl task = async
+                    ? new FabricAsyncTask(runners, profiler, mod, coalesced, nextId(), -1l)
+                    : new FabricTaskImpl(mod, coalesced, nextId(), -1l);
+            coalesced.setTask(task);
+            if (coalescing.putIfAbsent(taskKey, coalesced) == null) {
+                return handle(task, delay);
+            }
+        }
+    }
+
+    public List<FabricTask> runTaskTimerBatch(final Mod mod, final Collection<? extends Runnable> runnables, long delay, long period) {
+        return runTaskTimerBatch(mod, runnables, delay, period, false);
+    }
+
+    public List<FabricTask> runTaskTimerBatchAsynchronously(final Mod mod, final Collection<? extends Runnable> runnables, long delay, long period) {
+        return runTaskTimerBatch(mod, runnables, delay, period, true);
+    }
+
+    private List<FabricTask> runTaskTimerBatch(final Mod mod, final Collection<? extends Runnable> runnables, long delay, long period, final boolean async) {
+        validate(mod, runnables);
+        if (delay < 0l) {
+            delay = 0;
+        }
+        if (period == 0l) {
+            period = 1l;
+        } else if (period < -1l) {
+            period = -1l;
+        }
+        final Runnable[] batch = runnables.toArray(new Runnable[0]);
+        if (batch.length == 0) {
+            return Collections.emptyList();
+        }
+        for (Runnable runnable : batch) {
+            Validate.notNull(runnable, "Task cannot be null");
+        }
+        // One block of ids for the whole batch
+        int id = ids.getAndAdd(batch.length) + 1;
+        final List<FabricTaskImpl> tasks = new ArrayList<FabricTaskImpl>(batch.length);
+        for (Runnable runnable : batch) {
+            tasks.add(async
+                    ? new FabricAsyncTask(runners, profiler, mod, runnable, id++, period)
+                    : new FabricTaskImpl(mod, runnable, id++, period));
+        }
+        handleBatch(tasks, delay);
+        return Collections.<FabricTask>unmodifiableList(tasks);
+    }
+
+    public FabricTask runTaskLaterAsynchronously(final Mod mod, final Runnable runnable, final long delay, final TimeUnit unit) {
+        return runTaskTimerAsynchronously(mod, runnable, delay, -1l, unit);
+    }
+
+    public FabricTask runTaskTimerAsynchronously(final Mod mod, final Runnable runnable, final long delay, final long period, final TimeUnit unit) {
+        return runTaskTimerAsynchronously(mod, runnable, delay, period, unit, OverlapPolicy.ALLOW);
+    }
+
+    public FabricTask runTaskTimerAsynchronously(final Mod mod, final Runnable runnable, long delay, long period, final TimeUnit unit, final OverlapPolicy overlapPolicy) {
+        validate(mod, runnable);
+        Validate.notNull(unit, "Unit cannot be null");
+        Validate.notNull(overlapPolicy, "Overlap policy cannot be null");
+        if (delay < 0l) {
+            delay = 0;
+        }
+        if (period == 0l) {
+            period = 1l;
+        } else if (period < -1l) {
+            period = -1l;
+        }
+        final FabricTimedAsyncTask task = new FabricTimedAsyncTask(runners, profiler, mod, runnable, nextId(), period > 0 ? unit.toNanos(period) : -1l);
+        task.setOverlapPolicy(overlapPolicy);
+        register(task, false);
+        task.start(timers, launcher, unit.toNanos(delay));
+        return task;
+    }
+
+    public <T, R> FabricTask runTaskFanOut(final Mod mod, final Collection<T> source, final Collector<? super T, ?, R> collector, final Consumer<? super R> callback) {
+        Validate.notNull(source, "Source cannot be null");
+        return runTaskFanOut(mod, source.spliterator(), collector, callback);
+    }
+
+    public <T, R> FabricTask runTaskFanOut(final Mod mod, final Spliterator<T> source, final Collector<? super T, ?, R> collector, final Consumer<? super R> callback) {
+        validate(mod, source);
+        Validate.notNull(collector, "Collector cannot be null");
+        Validate.notNull(callback, "Callback cannot be null");
+        final FabricFanOut<T, R> fanOut = new FabricFanOut<T, R>(this, fanOutPool, source, collector, callback);
+        final FabricTaskImpl task = new FabricAsyncTask(runners, profiler, mod, fanOut, nextId(), -1l);
+        fanOut.setTask(task);
+        return handle(task, 0l);
     }
 
     public <T> Future<T> callSyncMethod(final Mod mod, final Callable<T> task) {
@@ -130,111 +413,55 @@ public class FabricSchedulerImpl implements FabricScheduler {
         return future;
     }
 
+    public <T> CompletableFuture<T> callSyncMethodAsync(final Mod mod, final Callable<T> task) {
+        validate(mod, task);
+        final FabricCompletableTask<T> future = new FabricCompletableTask<>(task, mod, nextId());
+        handle(future, 0l);
+        return future.getResult();
+    }
+
+    /**
+     * Tasks are registered as soon as they are submitted, so this is a single lookup that marks the task dead.
+     * The task stays in the incoming queue or in {@link #pending} until it is reached, and is then dropped
+     * without running.
+     */
     public void cancelTask(final int taskId) {
         if (taskId <= 0) {
             return;
         }
-        FabricTaskImpl task = runners.get(taskId);
-        if (task != null) {
-            task.cancel0();
-        }
-        task = new FabricTaskImpl(
-                new Runnable() {
-                    public void run() {
-                        if (!check(FabricSchedulerImpl.this.temp)) {
-                            check(FabricSchedulerImpl.this.pending);
-                        }
-                    }
-                    private boolean check(final Iterable<FabricTaskImpl> collection) {
-                        final Iterator<FabricTaskImpl> tasks = collection.iterator();
-                        while (tasks.hasNext()) {
-                            final FabricTaskImpl task = tasks.next();
-                            if (task.getTaskId() == taskId) {
-                                task.cancel0();
-                                tasks.remove();
-                                if (task.isSync()) {
-                                    runners.remove(taskId);
-                                }
-                                return true;
-                            }
-                        }
-                        return false;
-                    }});
-        handle(task, 0l);
-        for (FabricTaskImpl taskPending = head.getNext(); taskPending != null; taskPending = taskPending.getNext()) {
-            if (taskPending == task) {
-                return;
-            }
-            if (taskPending.getTaskId() == taskId) {
-                taskPending.cancel0();
-            }
+        final FabricTaskImpl task = runners.get(taskId);
+        if (task != null && task.cancel0() && task.isSync()) {
+            runners.remove(taskId, task);
         }
     }
 
     public void cancelTasks(final Mod mod) {
         Validate.notNull(mod, "Cannot cancel tasks of null mod");
-        final FabricTaskImpl task = new FabricTaskImpl(
-                new Runnable() {
-                    public void run() {
-                        check(FabricSchedulerImpl.this.pending);
-                        check(FabricSchedulerImpl.this.temp);
-                    }
-                    void check(final Iterable<FabricTaskImpl> collection) {
-                        final Iterator<FabricTaskImpl> tasks = collection.iterator();
-                        while (tasks.hasNext()) {
-                            final FabricTaskImpl task = tasks.next();
-                            if (task.getOwner().equals(mod)) {
-                                task.cancel0();
-                                tasks.remove();
-                                if (task.isSync()) {
-                                    runners.remove(task.getTaskId());
-                                }
-                            }
-                        }
-                    }
-                });
-        handle(task, 0l);
-        for (FabricTaskImpl taskPending = head.getNext(); taskPending != null; taskPending = taskPending.getNext()) {
-            if (taskPending == task) {
-                return;
-            }
-            if (taskPending.getTaskId() != -1 && taskPending.getOwner().equals(mod)) {
-                taskPending.cancel0();
-            }
-        }
-        for (FabricTaskImpl runner : runners.values()) {
-            if (runner.getOwner().equals(mod)) {
-                runner.cancel0();
+        runners.forEachOwnedBy(mod, task -> {
+            if (task.cancel0() && task.isSync()) {
+                runners.remove(task.getTaskId(), task);
             }
-        }
+        });
     }
 
     public void cancelAllTasks() {
-        final FabricTaskImpl task = new FabricTaskImpl(
-                new Runnable() {
-                    public void run() {
-                        Iterator<FabricTaskImpl> it = FabricSchedulerImpl.this.runners.values().iterator();
-                        while (it.hasNext()) {
-                            FabricTaskImpl task = it.next();
-                            task.cancel0();
-                            if (task.isSync()) {
-                                it.remove();
-                            }
-                        }
-                        FabricSchedulerImpl.this.pending.clear();
-                        FabricSchedulerImpl.this.temp.clear();
-                    }
-                });
-        handle(task, 0l);
-        for (FabricTaskImpl taskPending = head.getNext(); taskPending != null; taskPending = taskPending.getNext()) {
-            if (taskPending == task) {
-                break;
+        // Every queued task is registered, so this reaches the tasks still in the incoming queue too
+        runners.forEach(task -> {
+            if (task.cancel0() && task.isSync()) {
+                runners.remove(task.getTaskId(), task);
             }
-            taskPending.cancel0();
-        }
-        for (FabricTaskImpl runner : runners.values()) {
-            runner.cancel0();
-        }
+        });
+        // Only drops what was cancelled, tasks submitted after this returned are left alone
+        controls.offer(() -> {
+            pending.removeIf(task -> {
+                if (task.getPeriod() != -2l) {
+                    return false;
+                }
+                forget(task);
+                return true;
+            });
+            coalescing.values().removeIf(coalesced -> coalesced.getTask().getPeriod() == -2l);
+        });
     }
 
     public boolean isCurrentlyRunning(final int taskId) {
@@ -252,72 +479,186 @@ public class FabricSchedulerImpl implements FabricScheduler {
         if (taskId <= 0) {
             return false;
         }
-        for (FabricTaskImpl task = head.getNext(); task != null; task = task.getNext()) {
-            if (task.getTaskId() == taskId) {
-                return task.getPeriod() >= -1l; // The task will run
-            }
-        }
-        FabricTaskImpl task = runners.get(taskId);
-        return task != null && task.getPeriod() >= -1l;
+        final FabricTaskImpl task = runners.get(taskId);
+        return task != null && task.getPeriod() >= -1l; // The task will run
     }
 
     public List<FabricWorker> getActiveWorkers() {
         final ArrayList<FabricWorker> workers = new ArrayList<FabricWorker>();
-        for (final FabricTaskImpl taskObj : runners.values()) {
-            // Iterator will be a best-effort (may fail to grab very new values) if called from an async thread
+        runners.forEach(taskObj -> {
+            // Iteration will be a best-effort (may fail to grab very new values) if called from an async thread
             if (taskObj.isSync()) {
-                continue;
-            }
-            final FabricAsyncTask task = (FabricAsyncTask) taskObj;
-            synchronized (task.getWorkers()) {
-                // This will never have an issue with stale threads; it's state-safe
-                workers.addAll(task.getWorkers());
+                return;
             }
-        }
+            // Copies, the workers themselves are reused by later runs
+            ((FabricAsyncTask) taskObj).snapshotWorkers(workers);
+        });
         return workers;
     }
 
     public List<FabricTask> getPendingTasks() {
-        final ArrayList<FabricTaskImpl> truePending = new ArrayList<FabricTaskImpl>();
-        for (FabricTaskImpl task = head.getNext(); task != null; task = task.getNext()) {
-            if (task.getTaskId() != -1) {
-                // -1 is special code
-                truePending.add(task);
+        final ArrayList<FabricTask> pending = new ArrayList<FabricTask>();
+        runners.forEach(task -> {
+            if (task.getPeriod() >= -1l) {
+                pending.add(task);
             }
-        }
+        });
+        return pending;
+    }
 
+    public List<FabricTask> getPendingTasks(final Mod mod) {
+        Validate.notNull(mod, "Mod cannot be null");
         final ArrayList<FabricTask> pending = new ArrayList<FabricTask>();
-        for (FabricTaskImpl task : runners.values()) {
+        runners.forEachOwnedBy(mod, task -> {
             if (task.getPeriod() >= -1l) {
                 pending.add(task);
             }
+        });
+        return pending;
+    }
+
+    public int getTaskCount(final Mod mod) {
+        Validate.notNull(mod, "Mod cannot be null");
+        return runners.sizeOwnedBy(mod);
+    }
+
+    public int getAsyncQueueDepth() {
+        return executor.getQueueDepth() + (fairShare == null ? 0 : fairShare.getQueueDepth());
+    }
+
+    public int getAsyncQueueDepth(final Mod mod) {
+        Validate.notNull(mod, "Mod cannot be null");
+        return fairShare == null ? 0 : fairShare.getQueueDepth(mod);
+    }
+
+    public Map<Mod, FabricTaskTimings> getAsyncWaitTimings() {
+        return fairShare == null ? Collections.<Mod, FabricTaskTimings>emptyMap() : fairShare.getWaitTimings();
+    }
+
+    public int getAsyncActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getAsyncPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * @return async launches waiting for the next tick because the async queue was full
+     */
+    public int getAsyncDeferredCount() {
+        return executor.getDeferredCount();
+    }
+
+    /**
+     * @return async launches rejected because the async queue was full, since startup
+     */
+    public long getAsyncRejectedCount() {
+        return executor.getRejectedCount();
+    }
+
+    public int getDeferredTaskCount() {
+        return deferredTasks;
+    }
+
+    public Map<Mod, FabricTaskTimings> getModTimings() {
+        return profiler.getModTimings();
+    }
+
+    public Map<Class<?>, FabricTaskTimings> getTaskClassTimings() {
+        return profiler.getTaskClassTimings();
+    }
+
+    public void resetTimings() {
+        profiler.reset();
+        if (fairShare != null) {
+            fairShare.resetWaitTimings();
         }
+    }
 
-        for (final FabricTaskImpl task : truePending) {
-            if (task.getPeriod() >= -1l && !pending.contains(task)) {
-                pending.add(task);
-            }
+    /**
+     * @return the watchdog, or null if no threshold is configured
+     */
+    FabricWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    public FabricSchedulerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Executor getMainThreadExecutor() {
+        return mainThreadExecutor;
+    }
+
+    /**
+     * Stops the threads of the scheduler: the async pool, the timer thread, the fan-out pool and the watchdog.
+     * Async runs already started finish, nothing is launched afterwards. The scheduler can't be used again.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        timers.shutdownNow();
+        fanOutPool.shutdownNow();
+        if (watchdog != null) {
+            watchdog.shutdown();
         }
-        return pending;
+    }
+
+    /**
+     * Runs the commands queued on the main thread executor. Called at the start of a tick, the heartbeat
+     * drains it again at the end.
+     */
+    public void drainMainThreadExecutor() {
+        tickStartNanos = clock.nanoTime();
+        mainThreadExecutor.drain();
+    }
+
+    /**
+     * Runs {@link #mainThreadHeartbeat(int)} for the current tick of the clock.
+     */
+    public void heartbeat() {
+        mainThreadHeartbeat(clock.getTick());
     }
 
     /**
      * This method is designed to never block or wait for locks; an immediate execution of all current tasks.
+     * <p>
+     * Due tasks run by priority, then in the order they became due. When a sync tick budget is configured, due
+     * CRITICAL tasks always run, while NORMAL and BACKGROUND sync tasks left over once it is spent carry over to
+     * the next heartbeat, ahead of the tasks that become due then. Async tasks are launched on their due tick
+     * either way. BACKGROUND tasks can have a smaller budget of their own. A task that has waited longer than
+     * the max defer ticks runs regardless of the budget.
      */
     public void mainThreadHeartbeat(final int currentTick) {
         this.currentTick = currentTick;
-        final List<FabricTaskImpl> temp = this.temp;
+        final boolean budgeted = syncTickBudget > 0 || syncBackgroundBudget > 0;
+        final long start = clock.nanoTime();
+        updateElasticStretch(start);
+        if (watchdog != null) {
+            watchdog.heartbeat();
+        }
+        mainThreadExecutor.drain();
         parsePending();
-        while (isReady(currentTick)) {
-            final FabricTaskImpl task = pending.remove();
+        executor.launchDeferred();
+        pending.advance(currentTick);
+        FabricTaskImpl task;
+        int ran = 0;
+        while ((task = pollDue(budgeted, start)) != null) {
             if (task.getPeriod() < -1l) {
                 if (task.isSync()) {
                     runners.remove(task.getTaskId(), task);
                 }
+                forget(task);
                 parsePending();
                 continue;
             }
             if (task.isSync()) {
+                ran++;
+                metrics.ran(task, currentTick);
+                final long started = clock.nanoTime();
+                if (watchdog != null) {
+                    watchdog.syncStarted(task, started);
+                }
                 try {
                     task.run();
                 } catch (final Throwable throwable) {
@@ -328,42 +669,153 @@ public class FabricSchedulerImpl implements FabricScheduler {
                                     task.getTaskId(),
                                     task.getOwner().getName()),
                             throwable);
+                } finally {
+                    if (watchdog != null) {
+                        watchdog.syncEnded();
+                    }
+                    final long elapsed = clock.nanoTime() - started;
+                    profiler.record(task, elapsed);
+                    if (spreader != null) {
+                        spreader.ran(task, currentTick, elapsed);
+                    }
                 }
                 parsePending();
             } else {
-                debugTail = debugTail.setNext(new FabricAsyncDebugger(currentTick + RECENT_TICKS, task.getOwner(), task.getTaskClass()));
-                executor.execute(task);
+                // Skipped launches are neither counted nor late
+                if (((FabricAsyncTask) task).tryLaunch()) {
+                    ran++;
+                    metrics.ran(task, currentTick);
+                    debugger.record(currentTick + RECENT_TICKS, task.getOwner(), task.getTaskClass());
+                    launcher.execute(task);
+                }
                 // We don't need to parse pending
                 // (async tasks must live with race-conditions if they attempt to cancel between these few lines of code)
             }
             final long period = task.getPeriod(); // State consistency
             if (period > 0) {
-                task.setNextRun(currentTick + period);
-                temp.add(task);
+                // Always lands in a later tick, so it can't run again in this heartbeat
+                task.setNextRun(currentTick + (task.getMaxPeriod() > period ? stretch(period, task.getMaxPeriod()) : period));
+                pending.add(task);
             } else if (task.isSync()) {
                 runners.remove(task.getTaskId());
             }
         }
-        pending.addAll(temp);
-        temp.clear();
-        debugHead = debugHead.getNextHead(currentTick);
+        // Back in their lanes in the same order, ahead of the tasks that become due next tick
+        for (int i = 0; i < carried.size(); i++) {
+            pending.add(carried.get(i));
+        }
+        carried.clear();
+        deferredTasks = budgeted ? pending.readySize() : 0;
+        metrics.recordHeartbeat(clock.nanoTime() - start, ran, pending.size());
+    }
+
+    /**
+     * Measures the tick that is ending, from the start of tick event when there is one, otherwise as the time
+     * since the previous heartbeat.
+     */
+    private void updateElasticStretch(final long now) {
+        final long tick;
+        if (tickStartNanos != 0l) {
+            tick = now - tickStartNanos;
+            tickStartNanos = 0l;
+        } else if (lastHeartbeatNanos != 0l) {
+            tick = now - lastHeartbeatNanos;
+        } else {
+            tick = -1l;
+        }
+        lastHeartbeatNanos = now;
+        if (tick < 0) {
+            return;
+        }
+        averageTick = averageTick == 0d ? tick : averageTick + (tick - averageTick) * TICK_SMOOTHING;
+        elasticStretch = Math.max(1d, averageTick / elasticTargetTick);
+    }
+
+    private long stretch(final long period, final long maxPeriod) {
+        return Math.min(maxPeriod, (long) Math.ceil(period * elasticStretch));
+    }
+
+    /**
+     * Takes the next due task of the highest priority that is not carried over. Carried over sync tasks are
+     * moved aside to {@link #carried}, so async launches and cancelled tasks behind them are still reached.
+     */
+    private FabricTaskImpl pollDue(final boolean budgeted, final long start) {
+        for (int lane = 0; lane < FabricTimingWheel.LANES; lane++) {
+            FabricTaskImpl task;
+            while ((task = pending.peek(lane)) != null) {
+                if (!budgeted || !isCarriedOver(task, start)) {
+                    return pending.poll(lane);
+                }
+                carried.add(pending.poll(lane));
+            }
+        }
+        return null;
+    }
+
+    private boolean isCarriedOver(final FabricTaskImpl task, final long start) {
+        if (!task.isSync()
+                || task.getPeriod() < -1l
+                || task.getNextRun() <= currentTick - syncMaxDeferTicks) {
+            return false;
+        }
+        switch (task.getPriority()) {
+            case CRITICAL:
+                return false;
+            case BACKGROUND: {
+                // Also bound by the tick budget
+                final long elapsed = clock.nanoTime() - start;
+                return (syncBackgroundBudget > 0 && elapsed >= syncBackgroundBudget)
+                        || (syncTickBudget > 0 && elapsed >= syncTickBudget);
+            }
+            default:
+                return syncTickBudget > 0 && clock.nanoTime() - start >= syncTickBudget;
+        }
     }
 
-    private void addTask(final FabricTaskImpl task) {
-        final AtomicReference<FabricTaskImpl> tail = this.tail;
-        FabricTaskImpl tailTask = tail.get();
-        while (!tail.compareAndSet(tailTask, task)) {
-            tailTask = tail.get();
+    /**
+     * Registers the whole batch, then queues it with a single index claim.
+     */
+    private void handleBatch(final List<FabricTaskImpl> tasks, final long delay) {
+        final long nextRun = currentTick + delay;
+        for (FabricTaskImpl task : tasks) {
+            task.setNextRun(nextRun);
+            task.setScheduler(this);
         }
-        tailTask.setNext(task);
+        runners.putAll(tasks);
+        metrics.submitted(tasks.size(), true);
+        incoming.offerAll(tasks);
     }
 
     private FabricTaskImpl handle(final FabricTaskImpl task, final long delay) {
         task.setNextRun(currentTick + delay);
-        addTask(task);
+        register(task, true);
+        incoming.offer(task);
         return task;
     }
 
+    /**
+     * Registers the task before it is queued or timed, so it can be found and cancelled from any thread right away.
+     *
+     * @param queued false if the task is not handed to the main thread
+     */
+    private void register(final FabricTaskImpl task, final boolean queued) {
+        task.setScheduler(this);
+        runners.put(task);
+        metrics.submitted(1, queued);
+    }
+
+    /**
+     * Frees the key of a cancelled keyed task and the phase of a cancelled spread task.
+     */
+    private void forget(final FabricTaskImpl task) {
+        if (spreader != null) {
+            spreader.remove(task);
+        }
+        if (task.getRunnable() instanceof FabricCoalescingRunnable) {
+            ((FabricCoalescingRunnable) task.getRunnable()).forget();
+        }
+    }
+
     private static void validate(final Mod mod, final Object task) {
         Validate.notNull(mod, "Mod cannot be null");
         Validate.notNull(task, "Task cannot be null");
@@ -378,35 +830,33 @@ public class FabricSchedulerImpl implements FabricScheduler {
     }
 
     private void parsePending() {
-        FabricTaskImpl head = this.head;
-        FabricTaskImpl task = head.getNext();
-        FabricTaskImpl lastTask = head;
-        for (; task != null; task = (lastTask = task).getNext()) {
-            if (task.getTaskId() == -1) {
-                task.run();
-            } else if (task.getPeriod() >= -1l) {
+        Runnable control;
+        while ((control = controls.poll()) != null) {
+            control.run();
+        }
+        FabricTaskImpl task;
+        int parsed = 0;
+        while ((task = incoming.poll()) != null) {
+            parsed++;
+            if (task.getPeriod() >= -1l) {
+                if (spreader != null && task.isSync()) {
+                    spreader.place(task, currentTick);
+                }
                 pending.add(task);
-                runners.put(task.getTaskId(), task);
+            } else {
+                forget(task);
             }
         }
-        // We split this because of the way things are ordered for all of the async calls in CraftScheduler
-        // (it prevents race-conditions)
-        for (task = head; task != lastTask; task = head) {
-            head = task.getNext();
-            task.setNext(null);
+        if (parsed > 0) {
+            metrics.parsed(parsed);
         }
-        this.head = lastTask;
-    }
-
-    private boolean isReady(final int currentTick) {
-        return !pending.isEmpty() && pending.peek().getNextRun() <= currentTick;
     }
 
     @Override
     public String toString() {
         int debugTick = currentTick;
         StringBuilder string = new StringBuilder("Recent tasks from ").append(debugTick - RECENT_TICKS).append('-').append(debugTick).append('{');
-        debugHead.debugTo(string);
+        debugger.debugTo(string, debugTick);
         return string.append('}').toString();
     }
 
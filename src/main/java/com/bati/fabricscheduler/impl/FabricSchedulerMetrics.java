@@ -0,0 +1,264 @@
+package com.bati.fabricscheduler.impl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and histograms of a {@link FabricSchedulerImpl}, fed by the
+ * heartbeat, task submission and task runs. Gauges such as the async queue
+ * depth are read from the scheduler when queried.
+ * <p>
+ * Exposed as a JMX MBean and as a Prometheus text file. Unlike the task
+ * timings, nothing here is ever reset, so Prometheus counters stay monotonic.
+ */
+public class FabricSchedulerMetrics implements FabricSchedulerMetricsMBean {
+
+    static final String OBJECT_NAME = "com.bati.fabricscheduler:type=Scheduler";
+    private static final double[] QUANTILES = {0.5d, 0.9d, 0.99d, 0.999d};
+
+    private final FabricSchedulerImpl scheduler;
+    private final LongAdder submitted = new LongAdder();
+    /**
+     * Submitted tasks that never go through the incoming queue, the wall-clock timers
+     */
+    private final LongAdder unqueued = new LongAdder();
+    /**
+     * Written by the main thread only
+     */
+    private volatile long parsed;
+    private volatile int pendingSize;
+    private volatile int tasksLastTick;
+    private volatile long tasksTotal;
+    private final FabricTimingHistogram heartbeats = new FabricTimingHistogram();
+    /**
+     * In ticks rather than nanoseconds
+     */
+    private final FabricTimingHistogram lateness = new FabricTimingHistogram();
+    private final FabricTimingHistogram syncRuns = new FabricTimingHistogram();
+    private final FabricTimingHistogram asyncRuns = new FabricTimingHistogram();
+    private volatile boolean writeFailed;
+
+    FabricSchedulerMetrics(final FabricSchedulerImpl scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param queued false if the tasks are not handed to the main thread
+     */
+    void submitted(final int tasks, final boolean queued) {
+        submitted.add(tasks);
+        if (!queued) {
+            unqueued.add(tasks);
+        }
+    }
+
+    /**
+     * Main thread only.
+     */
+    void parsed(final int tasks) {
+        parsed += tasks;
+    }
+
+    void ran(final FabricTaskImpl task, final long currentTick) {
+        lateness.record(currentTick - task.getNextRun());
+    }
+
+    void recordRun(final FabricTaskImpl task, final long nanos) {
+        (task.isSync() ? syncRuns : asyncRuns).record(nanos);
+    }
+
+    /**
+     * Main thread only.
+     */
+    void recordHeartbeat(final long nanos, final int tasks, final int pending) {
+        heartbeats.record(nanos);
+        tasksLastTick = tasks;
+        tasksTotal += tasks;
+        pendingSize = pending;
+    }
+
+    public long getIncomingTaskCount() {
+        return Math.max(0l, submitted.sum() - unqueued.sum() - parsed);
+    }
+
+    public long getTasksSubmittedTotal() {
+        return submitted.sum();
+    }
+
+    public int getPendingTaskCount() {
+        return pendingSize;
+    }
+
+    public int getTasksRunLastTick() {
+        return tasksLastTick;
+    }
+
+    public long getTasksRunTotal() {
+        return tasksTotal;
+    }
+
+    public int getAsyncActiveCount() {
+        return scheduler.getAsyncActiveCount();
+    }
+
+    public int getAsyncQueueDepth() {
+        return scheduler.getAsyncQueueDepth();
+    }
+
+    public int getDeferredTaskCount() {
+        return scheduler.getDeferredTaskCount();
+    }
+
+    public long getHeartbeatCount() {
+        return heartbeats.getCount();
+    }
+
+    public long getHeartbeatMicrosP50() {
+        return micros(heartbeats.getPercentileNanos(0.5d));
+    }
+
+    public long getHeartbeatMicrosP99() {
+        return micros(heartbeats.getPercentileNanos(0.99d));
+    }
+
+    public long getHeartbeatMicrosP999() {
+        return micros(heartbeats.getPercentileNanos(0.999d));
+    }
+
+    public long getHeartbeatMicrosMax() {
+        return micros(heartbeats.getMaxNanos());
+    }
+
+    public long getLatenessTicksP50() {
+        return lateness.getPercentileNanos(0.5d);
+    }
+
+    public long getLatenessTicksP99() {
+        return lateness.getPercentileNanos(0.99d);
+    }
+
+    public long getLatenessTicksMax() {
+        return lateness.getMaxNanos();
+    }
+
+    public long getSyncRunMicrosP99() {
+        return micros(syncRuns.getPercentileNanos(0.99d));
+    }
+
+    public long getAsyncRunCount() {
+        return asyncRuns.getCount();
+    }
+
+    public long getAsyncRunMicrosP99() {
+        return micros(asyncRuns.getPercentileNanos(0.99d));
+    }
+
+    /**
+     * Registers this with the platform MBean server, replacing a previous scheduler's metrics.
+     */
+    public void register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (final JMException e) {
+            FabricSchedulerImpl.LOGGER.log(Level.WARNING, "Could not register the scheduler metrics MBean", e);
+        }
+    }
+
+    public void unregister() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (final JMException e) {
+            FabricSchedulerImpl.LOGGER.log(Level.WARNING, "Could not unregister the scheduler metrics MBean", e);
+        }
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format, to a temporary file that then replaces the given one, so
+     * a scraper never reads a partial file. Failures are logged once until a write succeeds again.
+     */
+    void writePrometheus(final Path file) {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            final Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                writer.write(toPrometheus());
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeFailed = false;
+        } catch (final IOException e) {
+            if (!writeFailed) {
+                writeFailed = true;
+                FabricSchedulerImpl.LOGGER.log(Level.WARNING, "Could not write scheduler metrics to " + file, e);
+            }
+        }
+    }
+
+    String toPrometheus() {
+        final StringBuilder string = new StringBuilder(4096);
+        gauge(string, "fabric_scheduler_incoming_tasks", "Tasks submitted but not yet picked up by the main thread", getIncomingTaskCount());
+        counter(string, "fabric_scheduler_tasks_submitted_total", "Tasks submitted to the scheduler", getTasksSubmittedTotal());
+        gauge(string, "fabric_scheduler_pending_tasks", "Tasks waiting for their tick", getPendingTaskCount());
+        gauge(string, "fabric_scheduler_tasks_last_tick", "Sync tasks run and async tasks launched by the last tick", getTasksRunLastTick());
+        counter(string, "fabric_scheduler_tasks_total", "Sync tasks run and async tasks launched by the heartbeat", getTasksRunTotal());
+        gauge(string, "fabric_scheduler_async_active_threads", "Threads running async tasks", getAsyncActiveCount());
+        gauge(string, "fabric_scheduler_async_queued_tasks", "Async tasks waiting for a thread", getAsyncQueueDepth());
+        gauge(string, "fabric_scheduler_deferred_tasks", "Sync tasks carried over by the last tick", getDeferredTaskCount());
+        summary(string, "fabric_scheduler_heartbeat_seconds", "Duration of the heartbeat", heartbeats, 1e-9d);
+        summary(string, "fabric_scheduler_lateness_ticks", "Ticks between when a task was due and when it ran or launched", lateness, 1d);
+        summary(string, "fabric_scheduler_sync_run_seconds", "Run time of sync tasks", syncRuns, 1e-9d);
+        summary(string, "fabric_scheduler_async_run_seconds", "Run time of async tasks", asyncRuns, 1e-9d);
+        return string.toString();
+    }
+
+    private static void gauge(final StringBuilder string, final String name, final String help, final long value) {
+        header(string, name, help, "gauge");
+        string.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(final StringBuilder string, final String name, final String help, final long value) {
+        header(string, name, help, "counter");
+        string.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(final StringBuilder string, final String name, final String help, final FabricTimingHistogram histogram, final double scale) {
+        header(string, name, help, "summary");
+        for (double quantile : QUANTILES) {
+            string.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.getPercentileNanos(quantile) * scale).append('\n');
+        }
+        string.append(name).append("_sum ").append(histogram.getTotalNanos() * scale).append('\n');
+        string.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    private static void header(final StringBuilder string, final String name, final String help, final String type) {
+        string.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        string.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
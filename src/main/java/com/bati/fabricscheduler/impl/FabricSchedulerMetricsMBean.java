@@ -0,0 +1,60 @@
+package com.bati.fabricscheduler.impl;
+
+/**
+ * JMX view of {@link FabricSchedulerMetrics}. Durations are in microseconds.
+ */
+public interface FabricSchedulerMetricsMBean {
+
+    /**
+     * @return tasks submitted but not yet moved to the timing wheel by the main thread
+     */
+    long getIncomingTaskCount();
+
+    /**
+     * @return tasks submitted since the scheduler started, including the wall-clock timers
+     */
+    long getTasksSubmittedTotal();
+
+    /**
+     * @return tasks waiting in the timing wheel after the last heartbeat
+     */
+    int getPendingTaskCount();
+
+    /**
+     * @return sync tasks run and async tasks launched by the last heartbeat
+     */
+    int getTasksRunLastTick();
+
+    long getTasksRunTotal();
+
+    int getAsyncActiveCount();
+
+    int getAsyncQueueDepth();
+
+    int getDeferredTaskCount();
+
+    long getHeartbeatCount();
+
+    long getHeartbeatMicrosP50();
+
+    long getHeartbeatMicrosP99();
+
+    long getHeartbeatMicrosP999();
+
+    long getHeartbeatMicrosMax();
+
+    /**
+     * @return ticks between when half of the tasks were due and when they ran or launched
+     */
+    long getLatenessTicksP50();
+
+    long getLatenessTicksP99();
+
+    long getLatenessTicksMax();
+
+    long getSyncRunMicrosP99();
+
+    long getAsyncRunCount();
+
+    long getAsyncRunMicrosP99();
+}
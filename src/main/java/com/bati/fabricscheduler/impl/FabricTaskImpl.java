@@ -2,12 +2,20 @@ package com.bati.fabricscheduler.impl;
 
 
 import com.bati.fabricscheduler.Mod;
-import com.bati.fabricscheduler.Scheduler;
+import com.bati.fabricscheduler.model.FabricRunnable;
 import com.bati.fabricscheduler.model.FabricTask;
+import com.bati.fabricscheduler.model.TaskPriority;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 class FabricTaskImpl implements FabricTask, Runnable {
 
-    private volatile FabricTaskImpl next = null;
+    private static final AtomicLongFieldUpdater<FabricTaskImpl> PERIOD = AtomicLongFieldUpdater.newUpdater(FabricTaskImpl.class, "period");
+
+    /**
+     * Main thread logic only, links the task into its {@link FabricTimingWheel} slot
+     */
+    private FabricTaskImpl wheelNext = null;
     /**
      * -1 means no repeating <br>
      * -2 means cancel <br>
@@ -18,23 +26,40 @@ class FabricTaskImpl implements FabricTask, Runnable {
      */
     private volatile long period;
     private long nextRun;
+    /**
+     * Longest period an elastic timer can be stretched to, 0 if the period is fixed. Set before the task is queued
+     */
+    private long maxPeriod;
+    /**
+     * Main thread logic only, the period and phase the task was spread over by {@link FabricPhaseSpreader}, and
+     * its expected cost in nanoseconds. The period is 0 if the task is not spread
+     */
+    private long spreadPeriod;
+    private int spreadPhase;
+    private long spreadCost;
     private final Runnable task;
     private final Mod mod;
     private final int id;
+    /**
+     * Set before the task is queued
+     */
+    private TaskPriority priority;
+    /**
+     * Scheduler the task was submitted to
+     */
+    private volatile FabricSchedulerImpl scheduler;
 
     FabricTaskImpl() {
         this(null, null, -1, -1);
     }
 
-    FabricTaskImpl(final Runnable task) {
-        this(null, task, -1, -1);
-    }
-
     FabricTaskImpl(final Mod mod, final Runnable task, final int id, final long period) {
         this.mod = mod;
         this.task = task;
         this.id = id;
         this.period = period;
+        final TaskPriority priority = task instanceof FabricRunnable ? ((FabricRunnable) task).getPriority() : null;
+        this.priority = priority == null ? TaskPriority.NORMAL : priority;
     }
 
     public final int getTaskId() {
@@ -49,6 +74,14 @@ class FabricTaskImpl implements FabricTask, Runnable {
         return true;
     }
 
+    public TaskPriority getPriority() {
+        return priority;
+    }
+
+    void setPriority(TaskPriority priority) {
+        this.priority = priority;
+    }
+
     public void run() {
         task.run();
     }
@@ -61,6 +94,36 @@ class FabricTaskImpl implements FabricTask, Runnable {
         this.period = period;
     }
 
+    boolean compareAndSetPeriod(long expect, long period) {
+        return PERIOD.compareAndSet(this, expect, period);
+    }
+
+    long getMaxPeriod() {
+        return maxPeriod;
+    }
+
+    void setMaxPeriod(long maxPeriod) {
+        this.maxPeriod = maxPeriod;
+    }
+
+    long getSpreadPeriod() {
+        return spreadPeriod;
+    }
+
+    int getSpreadPhase() {
+        return spreadPhase;
+    }
+
+    long getSpreadCost() {
+        return spreadCost;
+    }
+
+    void setSpread(long period, int phase, long cost) {
+        this.spreadPeriod = period;
+        this.spreadPhase = phase;
+        this.spreadCost = cost;
+    }
+
     long getNextRun() {
         return nextRun;
     }
@@ -69,20 +132,38 @@ class FabricTaskImpl implements FabricTask, Runnable {
         this.nextRun = nextRun;
     }
 
-    FabricTaskImpl getNext() {
-        return next;
+    FabricTaskImpl getWheelNext() {
+        return wheelNext;
+    }
+
+    void setWheelNext(FabricTaskImpl wheelNext) {
+        this.wheelNext = wheelNext;
+    }
+
+    FabricSchedulerImpl getScheduler() {
+        return scheduler;
+    }
+
+    void setScheduler(FabricSchedulerImpl scheduler) {
+        this.scheduler = scheduler;
     }
 
-    void setNext(FabricTaskImpl next) {
-        this.next = next;
+    Runnable getRunnable() {
+        return task;
     }
 
-    Class<? extends Runnable> getTaskClass() {
+    Class<?> getTaskClass() {
+        if (task instanceof FabricCoalescingRunnable) {
+            return ((FabricCoalescingRunnable) task).getTaskClass();
+        }
         return task.getClass();
     }
 
     public void cancel() {
-        Scheduler.get().cancelTask(id);
+        final FabricSchedulerImpl scheduler = this.scheduler;
+        if (scheduler != null) {
+            scheduler.cancelTask(id);
+        }
     }
 
     /**
@@ -0,0 +1,41 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.Mod;
+
+/**
+ * Coalescing key of a task, scoped to its owner so mods cannot collide.
+ */
+final class FabricTaskKey {
+
+    private final Mod owner;
+    private final Object key;
+    private final int hash;
+
+    FabricTaskKey(final Mod owner, final Object key) {
+        this.owner = owner;
+        this.key = key;
+        this.hash = 31 * owner.hashCode() + key.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof FabricTaskKey)) {
+            return false;
+        }
+        final FabricTaskKey other = (FabricTaskKey) object;
+        return owner.equals(other.owner) && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return owner.getId() + ":" + key;
+    }
+}
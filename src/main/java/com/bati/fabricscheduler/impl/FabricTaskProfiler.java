@@ -0,0 +1,56 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.model.FabricTaskTimings;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates the execution time of sync and async tasks by owner and by task class.
+ */
+class FabricTaskProfiler {
+
+    private final FabricTickClock clock;
+    private final FabricSchedulerMetrics metrics;
+
+    private final ConcurrentHashMap<Mod, FabricTimingHistogram> mods = new ConcurrentHashMap<Mod, FabricTimingHistogram>();
+    private final ConcurrentHashMap<Class<?>, FabricTimingHistogram> classes = new ConcurrentHashMap<Class<?>, FabricTimingHistogram>();
+
+    FabricTaskProfiler(final FabricTickClock clock, final FabricSchedulerMetrics metrics) {
+        this.clock = clock;
+        this.metrics = metrics;
+    }
+
+    long nanoTime() {
+        return clock.nanoTime();
+    }
+
+    void record(final FabricTaskImpl task, final long nanos) {
+        mods.computeIfAbsent(task.getOwner(), mod -> new FabricTimingHistogram()).record(nanos);
+        classes.computeIfAbsent(task.getTaskClass(), clazz -> new FabricTimingHistogram()).record(nanos);
+        metrics.recordRun(task, nanos);
+    }
+
+    /**
+     * @return the average run time of the task class in nanoseconds, or 0 if it never ran
+     */
+    double getAverageNanos(final Class<?> clazz) {
+        final FabricTimingHistogram timings = classes.get(clazz);
+        return timings == null ? 0d : timings.getAverageNanos();
+    }
+
+    Map<Mod, FabricTaskTimings> getModTimings() {
+        return Collections.unmodifiableMap(mods);
+    }
+
+    Map<Class<?>, FabricTaskTimings> getTaskClassTimings() {
+        return Collections.unmodifiableMap(classes);
+    }
+
+    void reset() {
+        mods.clear();
+        classes.clear();
+    }
+}
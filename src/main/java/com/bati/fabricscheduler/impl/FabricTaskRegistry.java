@@ -0,0 +1,270 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.Mod;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing map from task id to task, keyed by {@link FabricTaskImpl#getTaskId()}.
+ * <p>
+ * The ids are striped over segments by the high bits of their hash, so
+ * threads submitting tasks at the same time rarely wait for each other, and a
+ * resize only copies one segment. Lookups are lock-free and never allocate.
+ * Writers synchronize on the segment; a table is never modified after it has
+ * been replaced, so a reader holding an old table sees a slightly stale but
+ * consistent view, the same best-effort guarantee the old ConcurrentHashMap
+ * gave.
+ * <p>
+ * Every segment also indexes its tasks by owner, so per-mod operations only
+ * visit the tasks of that mod.
+ */
+class FabricTaskRegistry {
+
+    /**
+     * Marks a removed entry, so probing continues past it
+     */
+    private static final FabricTaskImpl TOMBSTONE = new FabricTaskImpl();
+    private static final int MIN_CAPACITY = 16;
+    private static final int SEGMENT_BITS = 5;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    FabricTaskRegistry() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(true);
+        }
+    }
+
+    FabricTaskImpl get(final int id) {
+        return segment(id).get(id);
+    }
+
+    void put(final FabricTaskImpl task) {
+        segment(task.getTaskId()).put(task);
+    }
+
+    void putAll(final List<? extends FabricTaskImpl> tasks) {
+        for (FabricTaskImpl task : tasks) {
+            put(task);
+        }
+    }
+
+    /**
+     * @return the removed task, or null if there was none
+     */
+    FabricTaskImpl remove(final int id) {
+        return segment(id).remove(id);
+    }
+
+    /**
+     * Removes the entry for the id only if it is mapped to the given task.
+     *
+     * @return true if the task was removed
+     */
+    boolean remove(final int id, final FabricTaskImpl task) {
+        return task != null && segment(id).remove(id, task);
+    }
+
+    /**
+     * Iterates a snapshot of the live tasks. Best-effort if called while other threads modify the registry.
+     */
+    void forEach(final Consumer<FabricTaskImpl> action) {
+        for (Segment segment : segments) {
+            segment.forEach(action);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Iterates a snapshot of the live tasks owned by the mod.
+     */
+    void forEachOwnedBy(final Mod owner, final Consumer<FabricTaskImpl> action) {
+        for (Segment segment : segments) {
+            final Segment owned = segment.owners.get(owner);
+            if (owned != null) {
+                owned.forEach(action);
+            }
+        }
+    }
+
+    int sizeOwnedBy(final Mod owner) {
+        int size = 0;
+        for (Segment segment : segments) {
+            final Segment owned = segment.owners.get(owner);
+            if (owned != null) {
+                size += owned.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segment(final int id) {
+        // High bits, the low ones pick the slot within the segment
+        return segments[hash(id) >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    private static int hash(final int id) {
+        final int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class Segment {
+
+        private volatile AtomicReferenceArray<FabricTaskImpl> table = new AtomicReferenceArray<>(MIN_CAPACITY);
+        /**
+         * Live entries, guarded by this
+         */
+        private int size;
+        /**
+         * Live entries and tombstones, guarded by this
+         */
+        private int used;
+        /**
+         * Per-owner tables, only written while holding the lock of this segment. Null for the per-owner tables.
+         */
+        private final ConcurrentHashMap<Mod, Segment> owners;
+
+        private Segment(final boolean indexOwners) {
+            this.owners = indexOwners ? new ConcurrentHashMap<Mod, Segment>() : null;
+        }
+
+        private FabricTaskImpl get(final int id) {
+            final AtomicReferenceArray<FabricTaskImpl> table = this.table;
+            final int mask = table.length() - 1;
+            for (int index = hash(id) & mask; ; index = (index + 1) & mask) {
+                final FabricTaskImpl task = table.get(index);
+                if (task == null) {
+                    return null;
+                }
+                if (task != TOMBSTONE && task.getTaskId() == id) {
+                    return task;
+                }
+            }
+        }
+
+        private synchronized void put(final FabricTaskImpl task) {
+            if ((used + 1) << 1 > table.length()) {
+                resize();
+            }
+            final AtomicReferenceArray<FabricTaskImpl> table = this.table;
+            final int mask = table.length() - 1;
+            final int id = task.getTaskId();
+            int free = -1;
+            for (int index = hash(id) & mask; ; index = (index + 1) & mask) {
+                final FabricTaskImpl current = table.get(index);
+                if (current == null) {
+                    if (free == -1) {
+                        free = index;
+                        used++;
+                    }
+                    break;
+                }
+                if (current == TOMBSTONE) {
+                    if (free == -1) {
+                        free = index;
+                    }
+                } else if (current.getTaskId() == id) {
+                    table.set(index, task);
+                    unindex(current);
+                    index(task);
+                    return;
+                }
+            }
+            table.set(free, task);
+            size++;
+            index(task);
+        }
+
+        private synchronized FabricTaskImpl remove(final int id) {
+            return removeEntry(id, null);
+        }
+
+        private synchronized boolean remove(final int id, final FabricTaskImpl task) {
+            return removeEntry(id, task) == task;
+        }
+
+        private void forEach(final Consumer<FabricTaskImpl> action) {
+            final AtomicReferenceArray<FabricTaskImpl> table = this.table;
+            for (int index = 0; index < table.length(); index++) {
+                final FabricTaskImpl task = table.get(index);
+                if (task != null && task != TOMBSTONE) {
+                    action.accept(task);
+                }
+            }
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private void index(final FabricTaskImpl task) {
+            if (owners != null) {
+                owners.computeIfAbsent(task.getOwner(), owner -> new Segment(false)).put(task);
+            }
+        }
+
+        private void unindex(final FabricTaskImpl task) {
+            if (owners == null) {
+                return;
+            }
+            final Segment owned = owners.get(task.getOwner());
+            if (owned != null && owned.remove(task.getTaskId(), task) && owned.size() == 0) {
+                // Nothing can be added meanwhile, owner tables are only written under our lock
+                owners.remove(task.getOwner(), owned);
+            }
+        }
+
+        private FabricTaskImpl removeEntry(final int id, final FabricTaskImpl expected) {
+            final AtomicReferenceArray<FabricTaskImpl> table = this.table;
+            final int mask = table.length() - 1;
+            for (int index = hash(id) & mask; ; index = (index + 1) & mask) {
+                final FabricTaskImpl current = table.get(index);
+                if (current == null) {
+                    return null;
+                }
+                if (current != TOMBSTONE && current.getTaskId() == id) {
+                    if (expected != null && current != expected) {
+                        return null;
+                    }
+                    table.set(index, TOMBSTONE);
+                    size--;
+                    unindex(current);
+                    return current;
+                }
+            }
+        }
+
+        private void resize() {
+            final AtomicReferenceArray<FabricTaskImpl> old = this.table;
+            int capacity = MIN_CAPACITY;
+            while (capacity < (size + 1) << 2) {
+                capacity <<= 1;
+            }
+            final AtomicReferenceArray<FabricTaskImpl> table = new AtomicReferenceArray<>(capacity);
+            final int mask = capacity - 1;
+            for (int i = 0; i < old.length(); i++) {
+                final FabricTaskImpl task = old.get(i);
+                if (task == null || task == TOMBSTONE) {
+                    continue;
+                }
+                int index = hash(task.getTaskId()) & mask;
+                while (table.get(index) != null) {
+                    index = (index + 1) & mask;
+                }
+                table.set(index, task);
+            }
+            used = size;
+            this.table = table;
+        }
+    }
+}
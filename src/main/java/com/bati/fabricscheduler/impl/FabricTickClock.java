@@ -0,0 +1,20 @@
+package com.bati.fabricscheduler.impl;
+
+/**
+ * Source of time for {@link FabricSchedulerImpl}, so the scheduler can be driven by a Minecraft server or by a
+ * headless harness running virtual ticks.
+ */
+public interface FabricTickClock {
+
+    /**
+     * @return the current tick, read by {@link FabricSchedulerImpl#heartbeat()}
+     */
+    int getTick();
+
+    /**
+     * @return a monotonic time in nanoseconds, used to measure tasks and the tick budget
+     */
+    default long nanoTime() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,93 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.Mod;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Async task timed by the wall clock instead of server ticks. The timer thread only hands each run to the
+ * async executor, so a stalled main thread does not delay it.
+ * <p>
+ * These tasks never enter the timing wheel, so the period holds nanoseconds rather than ticks; the shared
+ * code only looks at its sign.
+ * <p>
+ * Launches follow the overlap policy like tick timers do. A launch the
+ * executor defers is retried by the timer thread, the heartbeat never sees
+ * these tasks.
+ */
+class FabricTimedAsyncTask extends FabricAsyncTask {
+
+    /**
+     * Delay before a deferred launch is retried, one tick
+     */
+    private static final long RETRY_MILLIS = 50l;
+
+    private volatile ScheduledFuture<?> timer;
+    /**
+     * Set by {@link #start(ScheduledExecutorService, Executor, long)}
+     */
+    private volatile ScheduledExecutorService timers;
+    private volatile Executor executor;
+
+    FabricTimedAsyncTask(final FabricTaskRegistry runners, final FabricTaskProfiler profiler, final Mod mod, final Runnable task, final int id, final long periodNanos) {
+        super(runners, profiler, mod, task, id, periodNanos);
+    }
+
+    void start(final ScheduledExecutorService timers, final Executor executor, final long delayNanos) {
+        this.timers = timers;
+        this.executor = executor;
+        final Runnable launch = () -> {
+            if (getPeriod() == -2l) {
+                stop();
+                return;
+            }
+            if (tryLaunch()) {
+                executor.execute(this);
+            }
+        };
+        final long period = getPeriod();
+        timer = period > 0
+                ? timers.scheduleAtFixedRate(launch, delayNanos, period, TimeUnit.NANOSECONDS)
+                : timers.schedule(launch, delayNanos, TimeUnit.NANOSECONDS);
+        if (getPeriod() == -2l) {
+            // Cancelled before the timer was published
+            stop();
+        }
+    }
+
+    /**
+     * Called by the executor instead of deferring the launch to the heartbeat.
+     */
+    void deferLaunch() {
+        try {
+            timers.schedule(() -> {
+                if (getPeriod() == -2l) {
+                    launchRejected();
+                    return;
+                }
+                executor.execute(this);
+            }, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            // The scheduler is shutting down
+            launchRejected();
+        }
+    }
+
+    @Override
+    boolean cancel0() {
+        super.cancel0();
+        stop();
+        return true;
+    }
+
+    private void stop() {
+        final ScheduledFuture<?> timer = this.timer;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.model.TaskPriority;
+
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timing wheel keyed by server tick. Main thread logic only.
+ * <p>
+ * Level {@code n} holds the tasks that are due between {@code 64^n} and
+ * {@code 64^(n+1)} ticks from now, hashed by the matching 6 bits of their
+ * absolute due tick. Every tick the current slot of the lowest level expires,
+ * and whenever the lower bits of the tick wrap the current slot of the level
+ * above is cascaded down. Tasks further away than the whole wheel wait in an
+ * overflow list that is re-inserted when the top level wraps.
+ * <p>
+ * Inserting a task and expiring a tick are both O(1); each task is cascaded
+ * at most once per level. Due tasks wait in one ready list per
+ * {@link TaskPriority}, indexed by its ordinal.
+ */
+class FabricTimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 5;
+    private static final long SPAN = 1l << (SLOT_BITS * LEVELS);
+    static final int LANES = TaskPriority.values().length;
+
+    private final FabricTaskImpl[] heads = new FabricTaskImpl[SLOTS * LEVELS];
+    private final FabricTaskImpl[] tails = new FabricTaskImpl[SLOTS * LEVELS];
+    private FabricTaskImpl overflowHead;
+    private FabricTaskImpl overflowTail;
+    /**
+     * Tasks that are due, per priority, in the order they expired
+     */
+    private final FabricTaskImpl[] readyHeads = new FabricTaskImpl[LANES];
+    private final FabricTaskImpl[] readyTails = new FabricTaskImpl[LANES];
+    /**
+     * Last tick that has been expired
+     */
+    private long tick;
+    private int size;
+    /**
+     * Tasks in the ready lists
+     */
+    private int readySize;
+
+    FabricTimingWheel(final long tick) {
+        this.tick = tick;
+    }
+
+    /**
+     * Schedules the task for {@link FabricTaskImpl#getNextRun()}. Tasks that
+     * are already due go straight to the ready list.
+     */
+    void add(final FabricTaskImpl task) {
+        size++;
+        insert(task);
+    }
+
+    /**
+     * Expires every tick up to and including the given one.
+     */
+    void advance(final long currentTick) {
+        if (currentTick < tick || currentTick - tick >= SPAN) {
+            // Server tick counter was reset or jumped past the wheel, start over from the given tick
+            rebase(currentTick);
+            return;
+        }
+        while (tick < currentTick) {
+            final long now = ++tick;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((now & ((1l << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (now >>> (SLOT_BITS * level)) & SLOT_MASK);
+                }
+            }
+            if ((now & (SPAN - 1)) == 0) {
+                final FabricTaskImpl task = overflowHead;
+                overflowHead = overflowTail = null;
+                reinsert(task);
+            }
+            final int slot = (int) now & SLOT_MASK;
+            FabricTaskImpl task = heads[slot];
+            heads[slot] = tails[slot] = null;
+            while (task != null) {
+                final FabricTaskImpl next = task.getWheelNext();
+                task.setWheelNext(null);
+                append(task);
+                task = next;
+            }
+        }
+    }
+
+    /**
+     * @return the next due task of the highest priority, or null if none are due
+     */
+    FabricTaskImpl poll() {
+        for (int lane = 0; lane < LANES; lane++) {
+            if (readyHeads[lane] != null) {
+                return poll(lane);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the next due task of the priority with the given ordinal, or null if none are due
+     */
+    FabricTaskImpl poll(final int lane) {
+        final FabricTaskImpl task = readyHeads[lane];
+        if (task == null) {
+            return null;
+        }
+        readyHeads[lane] = task.getWheelNext();
+        if (readyHeads[lane] == null) {
+            readyTails[lane] = null;
+        }
+        task.setWheelNext(null);
+        size--;
+        readySize--;
+        return task;
+    }
+
+    /**
+     * @return the next due task of the highest priority without removing it, or null if none are due
+     */
+    FabricTaskImpl peek() {
+        for (int lane = 0; lane < LANES; lane++) {
+            if (readyHeads[lane] != null) {
+                return readyHeads[lane];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the next due task of the priority with the given ordinal without removing it, or null if none are due
+     */
+    FabricTaskImpl peek(final int lane) {
+        return readyHeads[lane];
+    }
+
+    /**
+     * @return the number of due tasks
+     */
+    int readySize() {
+        return readySize;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Drops every task matching the predicate from the wheel.
+     */
+    void removeIf(final Predicate<FabricTaskImpl> filter) {
+        FabricTaskImpl task = detachAll();
+        while (task != null) {
+            final FabricTaskImpl next = task.getWheelNext();
+            task.setWheelNext(null);
+            size--;
+            if (!filter.test(task)) {
+                add(task);
+            }
+            task = next;
+        }
+    }
+
+    private void insert(final FabricTaskImpl task) {
+        final long nextRun = task.getNextRun();
+        final long delay = nextRun - tick;
+        if (delay <= 0) {
+            append(task);
+            return;
+        }
+        if (delay >= SPAN) {
+            if (overflowTail == null) {
+                overflowHead = task;
+            } else {
+                overflowTail.setWheelNext(task);
+            }
+            overflowTail = task;
+            return;
+        }
+        final int level = (63 - Long.numberOfLeadingZeros(delay)) / SLOT_BITS;
+        final int slot = level * SLOTS + ((int) (nextRun >>> (SLOT_BITS * level)) & SLOT_MASK);
+        if (tails[slot] == null) {
+            heads[slot] = task;
+        } else {
+            tails[slot].setWheelNext(task);
+        }
+        tails[slot] = task;
+    }
+
+    private void cascade(final int level, final int index) {
+        final int slot = level * SLOTS + index;
+        final FabricTaskImpl task = heads[slot];
+        heads[slot] = tails[slot] = null;
+        reinsert(task);
+    }
+
+    private void reinsert(FabricTaskImpl task) {
+        while (task != null) {
+            final FabricTaskImpl next = task.getWheelNext();
+            task.setWheelNext(null);
+            insert(task);
+            task = next;
+        }
+    }
+
+    private void append(final FabricTaskImpl task) {
+        final int lane = task.getPriority().ordinal();
+        if (readyTails[lane] == null) {
+            readyHeads[lane] = task;
+        } else {
+            readyTails[lane].setWheelNext(task);
+        }
+        readyTails[lane] = task;
+        readySize++;
+    }
+
+    private void rebase(final long currentTick) {
+        final FabricTaskImpl task = detachAll();
+        tick = currentTick;
+        reinsert(task);
+    }
+
+    /**
+     * Unlinks every task, ready ones first, and returns them as a single chain.
+     */
+    private FabricTaskImpl detachAll() {
+        FabricTaskImpl head = null;
+        FabricTaskImpl tail = null;
+        for (int lane = 0; lane < LANES; lane++) {
+            if (readyHeads[lane] == null) {
+                continue;
+            }
+            if (tail == null) {
+                head = readyHeads[lane];
+            } else {
+                tail.setWheelNext(readyHeads[lane]);
+            }
+            tail = readyTails[lane];
+            readyHeads[lane] = readyTails[lane] = null;
+        }
+        readySize = 0;
+        for (int slot = 0; slot < heads.length; slot++) {
+            if (heads[slot] == null) {
+                continue;
+            }
+            if (tail == null) {
+                head = heads[slot];
+            } else {
+                tail.setWheelNext(heads[slot]);
+            }
+            tail = tails[slot];
+            heads[slot] = tails[slot] = null;
+        }
+        if (overflowHead != null) {
+            if (tail == null) {
+                head = overflowHead;
+            } else {
+                tail.setWheelNext(overflowHead);
+            }
+            overflowHead = overflowTail = null;
+        }
+        return head;
+    }
+}
@@ -0,0 +1,202 @@
+package com.bati.fabricscheduler.impl;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+
+/**
+ * Reports sync tasks and async workers that run for longer than a threshold,
+ * with the stack of their thread, so a stuck task shows up in the log rather
+ * than only as lag.
+ * <p>
+ * The heartbeat only publishes the sync task it is running, and async runs
+ * publish their worker while they run; everything else happens on the
+ * watchdog thread. Sync and async runs are checked on their own intervals, a
+ * quarter of their threshold. Each run is reported once.
+ */
+class FabricWatchdog {
+
+    private final FabricTaskRegistry runners;
+    private final FabricTickClock clock;
+    private final long syncThreshold;
+    private final long asyncThreshold;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ScheduledThreadPoolExecutor watchdog;
+
+    /**
+     * Written by the main thread, the start time before the task and cleared with the task
+     */
+    private volatile FabricTaskImpl syncTask;
+    private volatile long syncStarted;
+    private volatile Thread mainThread;
+    /**
+     * Worker of the run each async thread is in
+     */
+    private final ConcurrentHashMap<Thread, FabricWorkerImpl> inFlight = new ConcurrentHashMap<Thread, FabricWorkerImpl>();
+    /**
+     * Watchdog thread only, the start time of the last reported sync run and of the reported run of every
+     * async thread
+     */
+    private long syncReported;
+    private final Map<Thread, Long> asyncReported = new HashMap<Thread, Long>();
+
+    /**
+     * @param syncThreshold nanoseconds a sync task can run before it is reported, 0 to not watch them
+     * @param asyncThreshold nanoseconds an async run can take before it is reported, 0 to not watch them
+     */
+    FabricWatchdog(final FabricTaskRegistry runners, final FabricTickClock clock, final long syncThreshold, final long asyncThreshold) {
+        this.runners = runners;
+        this.clock = clock;
+        this.syncThreshold = syncThreshold;
+        this.asyncThreshold = asyncThreshold;
+        this.watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "Fabric Scheduler Watchdog Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (syncThreshold > 0) {
+            final long interval = interval(syncThreshold);
+            watchdog.scheduleWithFixedDelay(() -> check(this::checkSync), interval, interval, TimeUnit.NANOSECONDS);
+        }
+        if (asyncThreshold > 0) {
+            final long interval = interval(asyncThreshold);
+            watchdog.scheduleWithFixedDelay(() -> check(this::checkAsync), interval, interval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Main thread only, called before a sync task runs.
+     */
+    void syncStarted(final FabricTaskImpl task, final long started) {
+        syncStarted = started;
+        syncTask = task;
+    }
+
+    /**
+     * Main thread only, called after a sync task ran.
+     */
+    void syncEnded() {
+        syncTask = null;
+    }
+
+    /**
+     * Main thread only, called at the start of a heartbeat.
+     */
+    void heartbeat() {
+        mainThread = Thread.currentThread();
+    }
+
+    /**
+     * Called by an async run once its worker is set up.
+     */
+    void asyncStarted(final Thread thread, final FabricWorkerImpl worker) {
+        if (asyncThreshold > 0) {
+            inFlight.put(thread, worker);
+        }
+    }
+
+    /**
+     * Called by an async run before its worker is released.
+     */
+    void asyncEnded(final Thread thread) {
+        if (asyncThreshold > 0) {
+            inFlight.remove(thread);
+        }
+    }
+
+    /**
+     * Stops the watchdog thread, runs are no longer checked.
+     */
+    void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * @return the delay between checks, so a run is reported at most a quarter of the threshold late
+     */
+    private static long interval(final long threshold) {
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(10), threshold / 4);
+    }
+
+    private void check(final LongConsumer check) {
+        try {
+            check.accept(clock.nanoTime());
+        } catch (final Throwable throwable) {
+            // Never let the schedule die
+            FabricSchedulerImpl.LOGGER.log(Level.WARNING, "Scheduler watchdog failed", throwable);
+        }
+    }
+
+    private void checkSync(final long now) {
+        final FabricTaskImpl task = syncTask;
+        final long started = syncStarted;
+        final Thread mainThread = this.mainThread;
+        if (task == null || mainThread == null || now - started < syncThreshold || started == syncReported) {
+            return;
+        }
+        syncReported = started;
+        report("Sync", task, mainThread, now - started);
+    }
+
+    private void checkAsync(final long now) {
+        // Threads that are no longer overdue can be reported again on their next stuck run
+        asyncReported.keySet().removeIf(thread -> {
+            final FabricWorkerImpl worker = inFlight.get(thread);
+            return worker == null || now - worker.getStarted() < asyncThreshold;
+        });
+        for (Map.Entry<Thread, FabricWorkerImpl> entry : inFlight.entrySet()) {
+            // A worker reused by a newer run only reads as started later
+            final long started = entry.getValue().getStarted();
+            if (now - started < asyncThreshold) {
+                continue;
+            }
+            final Long previous = asyncReported.put(entry.getKey(), started);
+            final FabricTaskImpl task = runners.get(entry.getValue().getTaskId());
+            if ((previous == null || previous.longValue() != started) && task != null) {
+                report("Async", task, entry.getKey(), now - started);
+            }
+        }
+    }
+
+    private void report(final String kind, final FabricTaskImpl task, final Thread thread, final long nanos) {
+        final StringBuilder message = new StringBuilder(String.format(
+                "%s task #%s for %s (%s) has been running for %s ms on %s",
+                kind,
+                task.getTaskId(),
+                task.getOwner().getName(),
+                task.getTaskClass().getName(),
+                TimeUnit.NANOSECONDS.toMillis(nanos),
+                thread.getName()));
+        final ThreadInfo info = threads.getThreadInfo(thread.getId(), Integer.MAX_VALUE);
+        if (info != null) {
+            message.append(" (").append(info.getThreadState());
+            final LockInfo lock = info.getLockInfo();
+            if (lock != null) {
+                message.append(" on ").append(lock);
+                if (info.getLockOwnerName() != null) {
+                    message.append(" held by ").append(info.getLockOwnerName());
+                }
+            }
+            message.append(')');
+            appendStack(message, info.getStackTrace());
+        } else {
+            // Virtual threads are unknown to the ThreadMXBean
+            appendStack(message, thread.getStackTrace());
+        }
+        task.getOwner().getLogger().log(Level.WARNING, message.toString());
+    }
+
+    private static void appendStack(final StringBuilder message, final StackTraceElement[] stack) {
+        for (StackTraceElement element : stack) {
+            message.append("\n\tat ").append(element);
+        }
+    }
+}
@@ -1,4 +1,49 @@
 package com.bati.fabricscheduler.impl;
 
-public class FabricWorkerImpl {
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.model.FabricWorker;
+
+/**
+ * Worker of an async task execution. Each task keeps one and reuses it for every run that does not overlap
+ * another, so launching a task does not allocate a worker.
+ */
+public class FabricWorkerImpl implements FabricWorker {
+
+    private final int taskId;
+    private final Mod owner;
+    private Thread thread;
+    /**
+     * When the current run started, in {@link FabricTickClock#nanoTime()}. Volatile for the watchdog
+     */
+    private volatile long started;
+
+    FabricWorkerImpl(final int taskId, final Mod owner, final Thread thread) {
+        this.taskId = taskId;
+        this.owner = owner;
+        this.thread = thread;
+    }
+
+    public int getTaskId() {
+        return taskId;
+    }
+
+    public Mod getOwner() {
+        return owner;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    void setThread(final Thread thread) {
+        this.thread = thread;
+    }
+
+    long getStarted() {
+        return started;
+    }
+
+    void setStarted(final long started) {
+        this.started = started;
+    }
 }
@@ -119,6 +119,17 @@ public abstract class FabricRunnable implements Runnable {
         return setupId(Scheduler.get().runTaskTimerAsynchronously(mod, (Runnable) this, delay, period));
     }
 
+    /**
+     * Returns the priority this is scheduled with. Override it to schedule
+     * this with another priority than NORMAL.
+     *
+     * @return the priority of the task
+     * @see TaskPriority
+     */
+    public TaskPriority getPriority() {
+        return TaskPriority.NORMAL;
+    }
+
     /**
      * Gets the task id for this runnable.
      *
@@ -2,9 +2,17 @@ package com.bati.fabricscheduler.model;
 
 import com.bati.fabricscheduler.Mod;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
 
 public interface FabricScheduler {
 
@@ -129,6 +137,35 @@ public interface FabricScheduler {
      */
     public <T> Future<T> callSyncMethod(Mod plugin, Callable<T> task);
 
+    /**
+     * Calls a method on the main thread and returns a CompletableFuture that
+     * completes with its result. The calling thread is never blocked, and
+     * continuations run on the main thread once the method returns.
+     * <ul>
+     * <li>Note: Cancelling the CompletableFuture cancels the task if it has not
+     *     started yet.
+     * <li>Note2: An exception thrown by the method completes the
+     *     CompletableFuture exceptionally and is not logged.
+     * </ul>
+     * @param <T> The callable's return type
+     * @param plugin Mod that owns the task
+     * @param task Task to be executed
+     * @return CompletableFuture completed with the result of the task
+     */
+    public <T> CompletableFuture<T> callSyncMethodAsync(Mod plugin, Callable<T> task);
+
+    /**
+     * Returns an Executor that runs commands on the main thread.
+     * <p>
+     * A command submitted from the main thread runs immediately, otherwise it
+     * runs at the start or at the end of the next server tick, whichever comes
+     * first. Commands are not tasks: they have no id, cannot be cancelled and
+     * do not show up in {@link #getPendingTasks()}.
+     *
+     * @return the main thread Executor
+     */
+    public Executor getMainThreadExecutor();
+
     /**
      * Removes task from scheduler.
      *
@@ -196,6 +233,89 @@ public interface FabricScheduler {
      */
     public List<FabricTask> getPendingTasks();
 
+    /**
+     * Returns a list of the pending tasks owned by a particular plugin. The
+     * ordering of the tasks is not related to their order of execution.
+     * <p>
+     * Only the tasks of the given plugin are visited.
+     *
+     * @param plugin Owner of the tasks
+     * @return Pending tasks of the plugin
+     */
+    public List<FabricTask> getPendingTasks(Mod plugin);
+
+    /**
+     * Returns the number of tasks owned by a particular plugin that are
+     * either queued or currently running.
+     *
+     * @param plugin Owner of the tasks
+     * @return Number of tasks of the plugin
+     */
+    public int getTaskCount(Mod plugin);
+
+    /**
+     * Returns the number of async tasks waiting for a free thread.
+     *
+     * @return Depth of the async queue
+     */
+    public int getAsyncQueueDepth();
+
+    /**
+     * Returns the number of async tasks of the plugin waiting for its turn
+     * to launch. Always 0 unless async fair share is enabled.
+     *
+     * @param plugin Owner of the tasks
+     * @return Async tasks of the plugin waiting to launch
+     */
+    public int getAsyncQueueDepth(Mod plugin);
+
+    /**
+     * Returns how long async tasks of every plugin waited for their turn to
+     * launch, since startup or the last {@link #resetTimings()}. Empty
+     * unless async fair share is enabled.
+     *
+     * @return Unmodifiable live view of the wait times by plugin
+     */
+    public Map<Mod, FabricTaskTimings> getAsyncWaitTimings();
+
+    /**
+     * Returns the number of threads currently executing async tasks.
+     *
+     * @return Active async threads
+     */
+    public int getAsyncActiveCount();
+
+    /**
+     * Returns the number of sync tasks that were due during the last server
+     * tick but were carried over to the next one, because the tick budget
+     * for sync tasks was spent.
+     *
+     * @return Sync tasks deferred by the last tick
+     */
+    public int getDeferredTaskCount();
+
+    /**
+     * Returns the execution times of the sync and async tasks of every
+     * plugin, since startup or the last {@link #resetTimings()}.
+     *
+     * @return Unmodifiable live view of the timings by plugin
+     */
+    public Map<Mod, FabricTaskTimings> getModTimings();
+
+    /**
+     * Returns the execution times of the sync and async tasks grouped by
+     * the class of the task, since startup or the last
+     * {@link #resetTimings()}.
+     *
+     * @return Unmodifiable live view of the timings by task class
+     */
+    public Map<Class<?>, FabricTaskTimings> getTaskClassTimings();
+
+    /**
+     * Discards the collected task timings and async wait times.
+     */
+    public void resetTimings();
+
     /**
      * Returns a task that will run on the next server tick.
      *
@@ -288,6 +408,101 @@ public interface FabricScheduler {
      */
     public FabricTask runTaskTimer(Mod plugin, Runnable task, long delay, long period) throws IllegalArgumentException;
 
+    /**
+     * Returns a task that will run on the next server tick, before or after
+     * the other tasks due then according to its priority.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param task the task to be run
+     * @param priority the priority of the task
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     * @see TaskPriority
+     */
+    public FabricTask runTask(Mod plugin, Runnable task, TaskPriority priority) throws IllegalArgumentException;
+
+    /**
+     * Returns a task that will run after the specified number of server
+     * ticks, with the given priority.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param task the task to be run
+     * @param delay the ticks to wait before running the task
+     * @param priority the priority of the task
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     * @see TaskPriority
+     */
+    public FabricTask runTaskLater(Mod plugin, Runnable task, long delay, TaskPriority priority) throws IllegalArgumentException;
+
+    /**
+     * Returns a task that will repeatedly run until cancelled, starting after
+     * the specified number of server ticks, with the given priority.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param task the task to be run
+     * @param delay the ticks to wait before running the task
+     * @param period the ticks to wait between runs
+     * @param priority the priority of the task
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     * @see TaskPriority
+     */
+    public FabricTask runTaskTimer(Mod plugin, Runnable task, long delay, long period, TaskPriority priority) throws IllegalArgumentException;
+
+    /**
+     * Returns a task that will repeatedly run until cancelled, starting after
+     * the specified number of server ticks. While the server is overloaded,
+     * the period is stretched by {@link #getElasticStretchFactor()}, up to
+     * the max period, and it shrinks back as the server recovers.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param task the task to be run
+     * @param delay the ticks to wait before running the task
+     * @param period the ticks to wait between runs when the server keeps up
+     * @param maxPeriod the most ticks to wait between runs
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     * @throws IllegalArgumentException if period is not positive
+     * @throws IllegalArgumentException if maxPeriod is less than period
+     */
+    public FabricTask runTaskTimerElastic(Mod plugin, Runnable task, long delay, long period, long maxPeriod) throws IllegalArgumentException;
+
+    /**
+     * <b>Asynchronous tasks should never access any API in Fabric. Great care
+     * should be taken to assure the thread-safety of asynchronous tasks.</b>
+     * <p>
+     * Returns a task that will repeatedly run asynchronously until cancelled,
+     * with a period stretched up to the max period while the server is
+     * overloaded.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param task the task to be run
+     * @param delay the ticks to wait before running the task
+     * @param period the ticks to wait between runs when the server keeps up
+     * @param maxPeriod the most ticks to wait between runs
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     * @throws IllegalArgumentException if period is not positive
+     * @throws IllegalArgumentException if maxPeriod is less than period
+     * @see #runTaskTimerElastic(Mod, Runnable, long, long, long)
+     */
+    public FabricTask runTaskTimerElasticAsynchronously(Mod plugin, Runnable task, long delay, long period, long maxPeriod) throws IllegalArgumentException;
+
+    /**
+     * Returns how much elastic timers are currently stretched: the recent
+     * average tick duration divided by the target tick duration, and never
+     * below 1.
+     *
+     * @return the stretch factor, 1 when the server keeps up
+     */
+    public double getElasticStretchFactor();
+
     /**
      * @deprecated Use {@link FabricRunnable#runTaskTimer(Mod, long, long)}
      */
@@ -312,9 +527,222 @@ public interface FabricScheduler {
      */
     public FabricTask runTaskTimerAsynchronously(Mod plugin, Runnable task, long delay, long period) throws IllegalArgumentException;
 
+    /**
+     * <b>Asynchronous tasks should never access any API in Fabric. Great care
+     * should be taken to assure the thread-safety of asynchronous tasks.</b>
+     * <p>
+     * Returns a task that will repeatedly run asynchronously until cancelled,
+     * starting after the specified number of server ticks. The overlap
+     * policy decides what happens to a run that is due while the previous
+     * one is still going.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param task the task to be run
+     * @param delay the ticks to wait before running the task for the first
+     *     time
+     * @param period the ticks to wait between runs
+     * @param overlapPolicy what to do when a run is due before the previous
+     *     one ended
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     * @see OverlapPolicy
+     */
+    public FabricTask runTaskTimerAsynchronously(Mod plugin, Runnable task, long delay, long period, OverlapPolicy overlapPolicy) throws IllegalArgumentException;
+
     /**
      * @deprecated Use {@link FabricRunnable#runTaskTimerAsynchronously(Mod, long, long)}
      */
     @Deprecated
     public FabricTask runTaskTimerAsynchronously(Mod plugin, FabricRunnable task, long delay, long period) throws IllegalArgumentException;
+
+    /**
+     * Returns a task that will run on the main thread after the specified
+     * number of server ticks, unless a task with the same key is already
+     * waiting to run.
+     * <p>
+     * If the plugin already scheduled a task with this key that has not
+     * started yet, the given task replaces what that task will run and the
+     * existing FabricTask is returned; its delay is not changed. Otherwise a
+     * new task is scheduled.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param key coalescing key, compared with equals, e.g. a player UUID
+     * @param task the task to be run
+     * @param delay the ticks to wait before running the task
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if key is null
+     * @throws IllegalArgumentException if task is null
+     */
+    public FabricTask runTaskLater(Mod plugin, Object key, Runnable task, long delay) throws IllegalArgumentException;
+
+    /**
+     * <b>Asynchronous tasks should never access any API in Fabric. Great care
+     * should be taken to assure the thread-safety of asynchronous tasks.</b>
+     * <p>
+     * Returns a task that will run asynchronously after the specified number
+     * of server ticks, unless a task with the same key is already waiting to
+     * run.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param key coalescing key, compared with equals, e.g. a chunk position
+     * @param task the task to be run
+     * @param delay the ticks to wait before running the task
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if key is null
+     * @throws IllegalArgumentException if task is null
+     * @see #runTaskLater(Mod, Object, Runnable, long)
+     */
+    public FabricTask runTaskLaterAsynchronously(Mod plugin, Object key, Runnable task, long delay) throws IllegalArgumentException;
+
+    /**
+     * <b>Asynchronous tasks should never access any API in Fabric. Great care
+     * should be taken to assure the thread-safety of asynchronous tasks.</b>
+     * <p>
+     * Returns a task that will run asynchronously after the specified amount
+     * of wall-clock time. Unlike the tick based variant, it is launched by a
+     * timer thread and is not delayed when the main thread stalls.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param task the task to be run
+     * @param delay the time to wait before running the task
+     * @param unit the unit of the delay
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     * @throws IllegalArgumentException if unit is null
+     */
+    public FabricTask runTaskLaterAsynchronously(Mod plugin, Runnable task, long delay, TimeUnit unit) throws IllegalArgumentException;
+
+    /**
+     * <b>Asynchronous tasks should never access any API in Fabric. Great care
+     * should be taken to assure the thread-safety of asynchronous tasks.</b>
+     * <p>
+     * Returns a task that will repeatedly run asynchronously until cancelled,
+     * starting after the specified amount of wall-clock time. Runs are
+     * launched at a fixed rate by a timer thread, independently of server
+     * ticks.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param task the task to be run
+     * @param delay the time to wait before running the task for the first
+     *     time
+     * @param period the time between the starts of two runs
+     * @param unit the unit of the delay and period
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     * @throws IllegalArgumentException if unit is null
+     */
+    public FabricTask runTaskTimerAsynchronously(Mod plugin, Runnable task, long delay, long period, TimeUnit unit) throws IllegalArgumentException;
+
+    /**
+     * <b>Asynchronous tasks should never access any API in Fabric. Great care
+     * should be taken to assure the thread-safety of asynchronous tasks.</b>
+     * <p>
+     * Returns a task that will repeatedly run asynchronously until cancelled,
+     * starting after the specified amount of wall-clock time. The overlap
+     * policy decides what happens to a run that is due while the previous
+     * one is still going.
+     *
+     * @param plugin the reference to the plugin scheduling task
+     * @param task the task to be run
+     * @param delay the time to wait before running the task for the first
+     *     time
+     * @param period the time between the starts of two runs
+     * @param unit the unit of the delay and period
+     * @param overlapPolicy what to do when a run is due before the previous
+     *     one ended
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if task is null
+     * @throws IllegalArgumentException if unit is null
+     * @see OverlapPolicy
+     */
+    public FabricTask runTaskTimerAsynchronously(Mod plugin, Runnable task, long delay, long period, TimeUnit unit, OverlapPolicy overlapPolicy) throws IllegalArgumentException;
+
+    /**
+     * <b>The collector runs on many threads at once and should never access
+     * any API in Fabric.</b>
+     * <p>
+     * Returns a task that asynchronously splits the source across the cores,
+     * collects the elements and merges the partial results, then passes the
+     * combined result to the callback on the main thread.
+     * <p>
+     * The callback is not called if the task is cancelled first.
+     *
+     * @param <T> the type of the elements
+     * @param <R> the type of the result
+     * @param plugin the reference to the plugin scheduling task
+     * @param source the elements, not modified while the task runs
+     * @param collector how the elements are reduced, e.g. Collectors.toList()
+     * @param callback receives the result on the main thread
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if source, collector or callback is
+     *     null
+     */
+    public <T, R> FabricTask runTaskFanOut(Mod plugin, Collection<T> source, Collector<? super T, ?, R> collector, Consumer<? super R> callback) throws IllegalArgumentException;
+
+    /**
+     * <b>The collector runs on many threads at once and should never access
+     * any API in Fabric.</b>
+     * <p>
+     * Returns a task that asynchronously collects the elements of the
+     * spliterator in parallel and passes the result to the callback on the
+     * main thread.
+     *
+     * @param <T> the type of the elements
+     * @param <R> the type of the result
+     * @param plugin the reference to the plugin scheduling task
+     * @param source the elements, split by {@link Spliterator#trySplit()}
+     * @param collector how the elements are reduced, e.g. Collectors.toList()
+     * @param callback receives the result on the main thread
+     * @return a FabricTask that contains the id number
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if source, collector or callback is
+     *     null
+     * @see #runTaskFanOut(Mod, Collection, Collector, Consumer)
+     */
+    public <T, R> FabricTask runTaskFanOut(Mod plugin, Spliterator<T> source, Collector<? super T, ?, R> collector, Consumer<? super R> callback) throws IllegalArgumentException;
+
+    /**
+     * Returns tasks that will run on the main thread, each after the
+     * specified number of server ticks and then every period, in the
+     * iteration order of the collection.
+     * <p>
+     * This is cheaper than calling {@link #runTaskTimer(Mod, Runnable, long,
+     * long)} once per task, since the batch is queued in one operation.
+     *
+     * @param plugin the reference to the plugin scheduling the tasks
+     * @param tasks the tasks to be run
+     * @param delay the ticks to wait before running the tasks for the first
+     *     time
+     * @param period the ticks to wait between runs, or -1 to run them once
+     * @return the FabricTasks, in the order of the collection
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if tasks is null or contains null
+     */
+    public List<FabricTask> runTaskTimerBatch(Mod plugin, Collection<? extends Runnable> tasks, long delay, long period) throws IllegalArgumentException;
+
+    /**
+     * <b>Asynchronous tasks should never access any API in Fabric. Great care
+     * should be taken to assure the thread-safety of asynchronous tasks.</b>
+     * <p>
+     * Returns tasks that will run asynchronously, each after the specified
+     * number of server ticks and then every period.
+     *
+     * @param plugin the reference to the plugin scheduling the tasks
+     * @param tasks the tasks to be run
+     * @param delay the ticks to wait before running the tasks for the first
+     *     time
+     * @param period the ticks to wait between runs, or -1 to run them once
+     * @return the FabricTasks, in the order of the collection
+     * @throws IllegalArgumentException if plugin is null
+     * @throws IllegalArgumentException if tasks is null or contains null
+     * @see #runTaskTimerBatch(Mod, Collection, long, long)
+     */
+    public List<FabricTask> runTaskTimerBatchAsynchronously(Mod plugin, Collection<? extends Runnable> tasks, long delay, long period) throws IllegalArgumentException;
 }
\ No newline at end of file
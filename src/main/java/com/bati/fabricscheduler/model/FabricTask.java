@@ -28,6 +28,13 @@ public interface FabricTask {
      */
     public boolean isSync();
 
+    /**
+     * Returns the priority of the Task among the tasks due on the same tick.
+     *
+     * @return the priority, NORMAL unless given when scheduled
+     */
+    public TaskPriority getPriority();
+
     /**
      * Will attempt to cancel this task.
      */
@@ -0,0 +1,49 @@
+package com.bati.fabricscheduler.model;
+
+/**
+ * Execution times of a group of tasks, such as every task of a Mod or every
+ * task of the same class, since the scheduler started or was last reset.
+ * <p>
+ * Percentiles come from a histogram, so they are approximate.
+ */
+public interface FabricTaskTimings {
+
+    /**
+     * Returns the number of executions.
+     *
+     * @return Number of executions
+     */
+    public long getCount();
+
+    /**
+     * Returns the time spent in all executions.
+     *
+     * @return Total time in nanoseconds
+     */
+    public long getTotalNanos();
+
+    /**
+     * Returns the time of the longest execution.
+     *
+     * @return Max time in nanoseconds
+     */
+    public long getMaxNanos();
+
+    /**
+     * Returns the time that the given fraction of executions did not exceed.
+     *
+     * @param percentile Fraction between 0 and 1, e.g. 0.99
+     * @return Approximate time in nanoseconds
+     */
+    public long getPercentileNanos(double percentile);
+
+    /**
+     * Returns the mean time of an execution.
+     *
+     * @return Mean time in nanoseconds
+     */
+    public default double getAverageNanos() {
+        final long count = getCount();
+        return count == 0 ? 0 : (double) getTotalNanos() / count;
+    }
+}
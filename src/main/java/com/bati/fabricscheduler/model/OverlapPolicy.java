@@ -0,0 +1,22 @@
+package com.bati.fabricscheduler.model;
+
+/**
+ * What a repeating async task does when it is due while its previous run is
+ * still going.
+ */
+public enum OverlapPolicy {
+
+    /**
+     * Launches the run anyway, so runs of a slow task pile up. The default
+     */
+    ALLOW,
+    /**
+     * Skips the run, the task runs again on its next period
+     */
+    SKIP,
+    /**
+     * Skips the run, but runs the task once more right after the previous
+     * run ends, however many runs were skipped meanwhile
+     */
+    COALESCE
+}
@@ -0,0 +1,25 @@
+package com.bati.fabricscheduler.model;
+
+/**
+ * Order in which sync tasks due on the same tick are run.
+ * <p>
+ * Every due task of a higher priority runs before any task of a lower
+ * priority. When the scheduler has a time budget for sync tasks, only the
+ * lower priorities are carried over to a later tick once it is spent.
+ */
+public enum TaskPriority {
+
+    /**
+     * Runs first and is never carried over, e.g. gameplay callbacks
+     */
+    CRITICAL,
+    /**
+     * The default priority
+     */
+    NORMAL,
+    /**
+     * Runs last and is the first to be carried over when a tick is
+     * expensive, e.g. cosmetic updates
+     */
+    BACKGROUND
+}
@@ -0,0 +1,178 @@
+package com.bati.fabricscheduler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FabricMpscQueueTest {
+
+    @Test
+    void keepsOrderAcrossChunks() {
+        final FabricMpscQueue<Integer> queue = new FabricMpscQueue<Integer>(4);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        for (int i = 0; i < 100; i++) {
+            queue.offer(i);
+        }
+        assertFalse(queue.isEmpty());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void interleavedOfferAndPollHandOffChunks() {
+        final FabricMpscQueue<Integer> queue = new FabricMpscQueue<Integer>(4);
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 50; round++) {
+            // Three in, two out, so the consumer trails the producers by a growing number of chunks
+            for (int i = 0; i < 3; i++) {
+                queue.offer(next++);
+            }
+            for (int i = 0; i < 2; i++) {
+                assertEquals(expected++, (int) queue.poll());
+            }
+        }
+        while (expected < next) {
+            assertEquals(expected++, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void offerAllSpansSeveralChunks() {
+        final FabricMpscQueue<Integer> queue = new FabricMpscQueue<Integer>(3);
+        queue.offer(-1);
+        queue.offerAll(new ArrayList<Integer>());
+        final List<Integer> batch = new ArrayList<Integer>();
+        for (int i = 0; i < 19; i++) {
+            batch.add(i);
+        }
+        queue.offerAll(batch);
+        queue.offer(19);
+        final List<Integer> drained = new ArrayList<Integer>();
+        assertEquals(21, queue.drain(drained::add));
+        assertEquals(-1, (int) drained.get(0));
+        assertEquals(batch, drained.subList(1, 20));
+        assertEquals(19, (int) drained.get(20));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void multipleProducersKeepTheirOwnOrder() throws InterruptedException {
+        final FabricMpscQueue<long[]> queue = new FabricMpscQueue<long[]>(16);
+        final int producers = 4;
+        final int perProducer = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                int sequence = 0;
+                while (sequence < perProducer) {
+                    if (producer % 2 == 0 || sequence % 7 != 0) {
+                        queue.offer(new long[] {producer, sequence++});
+                    } else {
+                        // Batches crossing the chunk size mixed in with single offers
+                        final List<long[]> batch = new ArrayList<long[]>();
+                        for (int i = 0; i < 20 && sequence < perProducer; i++) {
+                            batch.add(new long[] {producer, sequence++});
+                        }
+                        queue.offerAll(batch);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+
+        final int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            final long[] value = queue.poll();
+            if (value == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            final int producer = (int) value[0];
+            assertEquals(next[producer], (int) value[1], "producer " + producer + " out of order");
+            next[producer]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        final int[] all = new int[producers];
+        Arrays.fill(all, perProducer);
+        assertTrue(Arrays.equals(all, next));
+    }
+
+    @Test
+    void drainWhileProducersOfferLosesNothing() throws InterruptedException {
+        // Chunk size 5 is rounded up to 8, so chunks are claimed and retired all the time
+        final FabricMpscQueue<long[]> queue = new FabricMpscQueue<long[]>(5);
+        final int producers = 3;
+        final int perProducer = 50000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int sequence = 0; sequence < perProducer; sequence++) {
+                    queue.offer(new long[] {producer, sequence});
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+
+        final int[] next = new int[producers];
+        final int[] received = new int[1];
+        while (received[0] < producers * perProducer) {
+            final int drained = queue.drain(value -> {
+                final int producer = (int) value[0];
+                assertEquals(next[producer], (int) value[1], "producer " + producer + " out of order");
+                next[producer]++;
+                received[0]++;
+            });
+            if (drained == 0) {
+                Thread.onSpinWait();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, queue.drain(value -> {
+            throw new AssertionError("drained twice");
+        }));
+        assertTrue(queue.isEmpty());
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
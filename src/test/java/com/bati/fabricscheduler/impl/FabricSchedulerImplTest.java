@@ -0,0 +1,361 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.Mod;
+import com.bati.fabricscheduler.model.FabricTask;
+import com.bati.fabricscheduler.model.OverlapPolicy;
+import com.bati.fabricscheduler.model.TaskPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FabricSchedulerImplTest {
+
+    private final Mod mod = new Mod("test", "Test", "1.0.0");
+
+    FabricSchedulerImplTest() {
+        mod.setEnabled(true);
+    }
+
+    @Test
+    void asyncTaskLaunchesOnItsDueTickWhileTheSyncBudgetIsSpent() throws InterruptedException {
+        final FabricSchedulerConfig config = new FabricSchedulerConfig();
+        config.setSyncTickBudgetMicros(1l);
+        config.setSyncMaxDeferTicks(2);
+        config.setWatchdogSyncThresholdMillis(0l);
+        final SlowClock clock = new SlowClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(config, clock);
+        scheduler.heartbeat();
+        final AtomicInteger syncRuns = new AtomicInteger();
+        final CountDownLatch launched = new CountDownLatch(1);
+        // Same lane, the sync task is ahead of the async one
+        scheduler.runTask(mod, syncRuns::incrementAndGet);
+        scheduler.runTaskAsynchronously(mod, launched::countDown);
+
+        clock.advance();
+        scheduler.heartbeat();
+        assertTrue(launched.await(5l, TimeUnit.SECONDS), "async task held back by a carried over sync task");
+        assertEquals(0, syncRuns.get());
+        assertEquals(1, scheduler.getDeferredTaskCount());
+
+        clock.advance();
+        scheduler.heartbeat();
+        assertEquals(1, syncRuns.get(), "runs once it waited for the max defer ticks");
+        assertEquals(0, scheduler.getDeferredTaskCount());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void carriedOverTasksRunNextTickAheadOfTheTasksDueThen() {
+        final FabricSchedulerConfig config = new FabricSchedulerConfig();
+        config.setSyncTickBudgetMicros(1l);
+        config.setWatchdogSyncThresholdMillis(0l);
+        final SlowClock clock = new SlowClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(config, clock);
+        scheduler.heartbeat();
+        final List<String> ran = new ArrayList<String>();
+        scheduler.runTask(mod, () -> ran.add("carried"), TaskPriority.NORMAL);
+        scheduler.runTask(mod, () -> ran.add("critical"), TaskPriority.CRITICAL);
+        scheduler.runTaskLater(mod, () -> ran.add("next"), 2l, TaskPriority.NORMAL);
+
+        clock.advance();
+        scheduler.heartbeat();
+        assertEquals(Arrays.asList("critical"), ran, "only CRITICAL runs once the budget is spent");
+        assertEquals(1, scheduler.getDeferredTaskCount());
+
+        clock.step = 0l;
+        clock.advance();
+        scheduler.heartbeat();
+        assertEquals(Arrays.asList("critical", "carried", "next"), ran);
+        assertEquals(0, scheduler.getDeferredTaskCount());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void taskCancelledBeforeItIsParsedNeverRuns() throws InterruptedException {
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(new FabricSchedulerConfig(), clock);
+        final AtomicInteger runs = new AtomicInteger();
+        final int taskId = scheduler.runTask(mod, runs::incrementAndGet).getTaskId();
+        assertTrue(scheduler.isQueued(taskId));
+        // From another thread, while the task is still in the incoming queue
+        final Thread cancelling = new Thread(() -> scheduler.cancelTask(taskId));
+        cancelling.start();
+        cancelling.join();
+        assertFalse(scheduler.isQueued(taskId));
+
+        clock.advance();
+        scheduler.heartbeat();
+        assertEquals(0, runs.get());
+        assertTrue(scheduler.getPendingTasks().isEmpty());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void cancelledTimerStopsAndOtherModsKeepRunning() {
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(new FabricSchedulerConfig(), clock);
+        final Mod other = new Mod("other", "Other", "1.0.0");
+        other.setEnabled(true);
+        final AtomicInteger cancelledRuns = new AtomicInteger();
+        final AtomicInteger otherRuns = new AtomicInteger();
+        final FabricTask cancelled = scheduler.runTaskTimer(mod, cancelledRuns::incrementAndGet, 0l, 1l);
+        scheduler.runTaskTimer(other, otherRuns::incrementAndGet, 0l, 1l);
+
+        clock.advance();
+        scheduler.heartbeat();
+        assertEquals(1, cancelledRuns.get());
+        scheduler.cancelTasks(mod);
+        assertFalse(scheduler.isQueued(cancelled.getTaskId()));
+        for (int i = 0; i < 5; i++) {
+            clock.advance();
+            scheduler.heartbeat();
+        }
+        assertEquals(1, cancelledRuns.get());
+        assertEquals(6, otherRuns.get());
+        assertEquals(1, scheduler.getPendingTasks().size());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void skippedRunsOfASlowTimerAreDropped() throws InterruptedException {
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(new FabricSchedulerConfig(), clock);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        scheduler.runTaskTimerAsynchronously(mod, blockFirstRun(runs, release), 0l, 1l, OverlapPolicy.SKIP);
+
+        heartbeats(scheduler, clock, 1);
+        awaitValue(runs, 1);
+        heartbeats(scheduler, clock, 4);
+        release.countDown();
+        awaitIdle(scheduler);
+        assertEquals(1, runs.get(), "runs due while the first one was going are skipped");
+
+        // The run ends just after its worker is gone, so one of the next heartbeats launches again
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5l);
+        while (runs.get() < 2 && System.nanoTime() < deadline) {
+            heartbeats(scheduler, clock, 1);
+            Thread.sleep(1l);
+        }
+        assertTrue(runs.get() >= 2, "not launched again after the slow run ended");
+        scheduler.shutdown();
+    }
+
+    @Test
+    void skippedRunsOfASlowTimerCoalesceIntoOne() throws InterruptedException {
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(new FabricSchedulerConfig(), clock);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        scheduler.runTaskTimerAsynchronously(mod, blockFirstRun(runs, release), 0l, 1l, OverlapPolicy.COALESCE);
+
+        heartbeats(scheduler, clock, 1);
+        awaitValue(runs, 1);
+        heartbeats(scheduler, clock, 4);
+        release.countDown();
+        awaitValue(runs, 2);
+        awaitIdle(scheduler);
+        assertEquals(2, runs.get(), "four skipped runs make a single follow-up");
+        scheduler.shutdown();
+    }
+
+    @Test
+    void overlappingRunsPileUpWhenAllowed() throws InterruptedException {
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(new FabricSchedulerConfig(), clock);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        scheduler.runTaskTimerAsynchronously(mod, () -> {
+            runs.incrementAndGet();
+            awaitQuietly(release);
+        }, 0l, 1l, OverlapPolicy.ALLOW);
+
+        heartbeats(scheduler, clock, 3);
+        awaitValue(runs, 3);
+        assertEquals(3, scheduler.getActiveWorkers().size());
+        release.countDown();
+        awaitIdle(scheduler);
+        scheduler.shutdown();
+    }
+
+    @Test
+    void fairShareServesAQuietModAheadOfABusyModsBacklog() throws InterruptedException {
+        final FabricSchedulerConfig config = new FabricSchedulerConfig();
+        config.setAsyncFairShare(true);
+        config.setAsyncCoreThreads(1);
+        config.setAsyncMaxThreads(1);
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(config, clock);
+        final Mod quiet = new Mod("quiet", "Quiet", "1.0.0");
+        quiet.setEnabled(true);
+        final List<Mod> ran = Collections.synchronizedList(new ArrayList<Mod>());
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(103);
+        // Holds the only thread, so everything else waits in the fair share queues
+        scheduler.runTaskAsynchronously(mod, () -> {
+            awaitQuietly(release);
+            ran.add(mod);
+            done.countDown();
+        });
+        for (int i = 0; i < 99; i++) {
+            scheduler.runTaskAsynchronously(mod, () -> {
+                ran.add(mod);
+                done.countDown();
+            });
+        }
+        for (int i = 0; i < 3; i++) {
+            scheduler.runTaskAsynchronously(quiet, () -> {
+                ran.add(quiet);
+                done.countDown();
+            });
+        }
+
+        heartbeats(scheduler, clock, 1);
+        release.countDown();
+        assertTrue(done.await(5l, TimeUnit.SECONDS));
+        // Both mods take turns, instead of the quiet one waiting for the whole backlog
+        assertTrue(ran.lastIndexOf(quiet) < 8, "quiet mod ran last at " + ran.lastIndexOf(quiet));
+        scheduler.shutdown();
+    }
+
+    @Test
+    void callSyncMethodAsyncCompletesOnTheHeartbeat() throws Exception {
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(new FabricSchedulerConfig(), clock);
+        final CompletableFuture<Integer> result = scheduler.callSyncMethodAsync(mod, () -> 42);
+        final CompletableFuture<Integer> failed = scheduler.callSyncMethodAsync(mod, () -> {
+            throw new IllegalStateException("failed");
+        });
+        final CompletableFuture<Integer> cancelled = scheduler.callSyncMethodAsync(mod, () -> 1);
+        final CompletableFuture<Integer> chained = result.thenApply(value -> value + 1);
+        assertTrue(cancelled.cancel(false));
+        assertFalse(result.isDone());
+
+        heartbeats(scheduler, clock, 1);
+        assertEquals(42, (int) result.getNow(null));
+        assertEquals(43, (int) chained.getNow(null));
+        assertTrue(failed.isCompletedExceptionally());
+        assertTrue(cancelled.isCancelled());
+        assertTrue(scheduler.getPendingTasks().isEmpty());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void resubmittingAKeyReplacesThePendingTask() {
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(new FabricSchedulerConfig(), clock);
+        final Mod other = new Mod("other", "Other", "1.0.0");
+        other.setEnabled(true);
+        final List<String> ran = new ArrayList<String>();
+        final FabricTask first = scheduler.runTaskLater(mod, "player", () -> ran.add("first"), 2l);
+        final FabricTask replaced = scheduler.runTaskLater(mod, "player", () -> ran.add("second"), 5l);
+        final FabricTask otherKey = scheduler.runTaskLater(mod, "chunk", () -> ran.add("chunk"), 2l);
+        final FabricTask otherMod = scheduler.runTaskLater(other, "player", () -> ran.add("other"), 2l);
+        assertSame(first, replaced, "the pending task is reused");
+        assertNotSame(first, otherKey);
+        assertNotSame(first, otherMod);
+        assertEquals(3, scheduler.getPendingTasks().size());
+
+        heartbeats(scheduler, clock, 3);
+        assertEquals(3, ran.size());
+        assertTrue(ran.containsAll(Arrays.asList("second", "chunk", "other")), "the latest runnable runs once");
+
+        // Ran, so the key is free again
+        final FabricTask next = scheduler.runTaskLater(mod, "player", () -> ran.add("next"), 1l);
+        assertNotSame(first, next);
+        heartbeats(scheduler, clock, 1);
+        assertEquals("next", ran.get(3));
+        scheduler.shutdown();
+    }
+
+    @Test
+    void resubmittingAKeyCoalescesAsyncTasks() throws InterruptedException {
+        final FabricManualTickClock clock = new FabricManualTickClock();
+        final FabricSchedulerImpl scheduler = new FabricSchedulerImpl(new FabricSchedulerConfig(), clock);
+        final List<Integer> ran = Collections.synchronizedList(new ArrayList<Integer>());
+        FabricTask task = null;
+        for (int i = 0; i < 10; i++) {
+            final int submission = i;
+            final FabricTask submitted = scheduler.runTaskLaterAsynchronously(mod, "region", () -> ran.add(submission), 1l);
+            assertTrue(task == null || task == submitted);
+            task = submitted;
+        }
+        assertFalse(task.isSync());
+
+        heartbeats(scheduler, clock, 2);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5l);
+        while (ran.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(1l);
+        }
+        awaitIdle(scheduler);
+        assertEquals(Arrays.asList(9), ran);
+        scheduler.shutdown();
+    }
+
+    private static Runnable blockFirstRun(final AtomicInteger runs, final CountDownLatch release) {
+        return () -> {
+            if (runs.incrementAndGet() == 1) {
+                awaitQuietly(release);
+            }
+        };
+    }
+
+    private static void heartbeats(final FabricSchedulerImpl scheduler, final FabricManualTickClock clock, final int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            clock.advance();
+            scheduler.heartbeat();
+        }
+    }
+
+    private static void awaitValue(final AtomicInteger value, final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5l);
+        while (value.get() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(1l);
+        }
+        assertEquals(expected, value.get());
+    }
+
+    private static void awaitIdle(final FabricSchedulerImpl scheduler) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5l);
+        while (!scheduler.getActiveWorkers().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(1l);
+        }
+        assertTrue(scheduler.getActiveWorkers().isEmpty(), "async runs did not end");
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Every read is a step after the previous one, a millisecond by default so any tick budget is spent right
+     * away
+     */
+    private static class SlowClock extends FabricManualTickClock {
+
+        private long nanos;
+        private long step = TimeUnit.MILLISECONDS.toNanos(1l);
+
+        @Override
+        public long nanoTime() {
+            return nanos += step;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.Mod;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FabricTaskRegistryTest {
+
+    private final Mod first = new Mod("first", "First", "1.0.0");
+    private final Mod second = new Mod("second", "Second", "1.0.0");
+
+    @Test
+    void putGetRemove() {
+        final FabricTaskRegistry registry = new FabricTaskRegistry();
+        final FabricTaskImpl task = task(first, 7);
+        registry.put(task);
+        assertSame(task, registry.get(7));
+        assertNull(registry.get(8));
+        assertEquals(1, registry.size());
+        assertSame(task, registry.remove(7));
+        assertNull(registry.get(7));
+        assertNull(registry.remove(7));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void putReplacesTheSameId() {
+        final FabricTaskRegistry registry = new FabricTaskRegistry();
+        final FabricTaskImpl replaced = task(first, 3);
+        final FabricTaskImpl task = task(second, 3);
+        registry.put(replaced);
+        registry.put(task);
+        assertSame(task, registry.get(3));
+        assertEquals(1, registry.size());
+        assertEquals(0, registry.sizeOwnedBy(first));
+        assertEquals(1, registry.sizeOwnedBy(second));
+    }
+
+    @Test
+    void conditionalRemoveOnlyRemovesTheGivenTask() {
+        final FabricTaskRegistry registry = new FabricTaskRegistry();
+        final FabricTaskImpl task = task(first, 5);
+        registry.put(task);
+        assertFalse(registry.remove(5, task(first, 5)));
+        assertFalse(registry.remove(5, null));
+        assertSame(task, registry.get(5));
+        assertTrue(registry.remove(5, task));
+        assertNull(registry.get(5));
+    }
+
+    @Test
+    void findsEntriesPastTombstonesAndAfterResizes() {
+        final FabricTaskRegistry registry = new FabricTaskRegistry();
+        final List<FabricTaskImpl> tasks = new ArrayList<FabricTaskImpl>();
+        for (int id = 1; id <= 20000; id++) {
+            final FabricTaskImpl task = task(id % 2 == 0 ? first : second, id);
+            tasks.add(task);
+            registry.put(task);
+        }
+        // Leaves tombstones in the middle of probe chains
+        for (int id = 1; id <= 20000; id += 3) {
+            assertSame(tasks.get(id - 1), registry.remove(id));
+        }
+        for (int id = 1; id <= 20000; id++) {
+            if ((id - 1) % 3 == 0) {
+                assertNull(registry.get(id));
+            } else {
+                assertSame(tasks.get(id - 1), registry.get(id));
+            }
+        }
+        // Reuses tombstones, then grows again
+        for (int id = 1; id <= 20000; id += 3) {
+            registry.put(tasks.get(id - 1));
+        }
+        for (int id = 20001; id <= 30000; id++) {
+            registry.put(task(first, id));
+        }
+        assertEquals(30000, registry.size());
+        for (int id = 1; id <= 30000; id++) {
+            assertEquals(id, registry.get(id).getTaskId());
+        }
+    }
+
+    @Test
+    void matchesAReferenceUnderRandomOperations() {
+        final Random random = new Random(7l);
+        final FabricTaskRegistry registry = new FabricTaskRegistry();
+        final Map<Integer, FabricTaskImpl> reference = new HashMap<Integer, FabricTaskImpl>();
+        for (int i = 0; i < 200000; i++) {
+            // Negative ids and a small range, so collisions and tombstones are common
+            final int id = random.nextInt(4000) - 100;
+            if (random.nextBoolean()) {
+                final FabricTaskImpl task = task(random.nextBoolean() ? first : second, id);
+                registry.put(task);
+                reference.put(id, task);
+            } else {
+                assertSame(reference.remove(id), registry.remove(id));
+            }
+        }
+        assertEquals(reference.size(), registry.size());
+        for (int id = -100; id < 3900; id++) {
+            assertSame(reference.get(id), registry.get(id));
+        }
+        final Set<FabricTaskImpl> seen = new HashSet<FabricTaskImpl>();
+        registry.forEach(task -> assertTrue(seen.add(task)));
+        assertEquals(new HashSet<FabricTaskImpl>(reference.values()), seen);
+        for (Mod owner : new Mod[] {first, second}) {
+            final Set<FabricTaskImpl> owned = new HashSet<FabricTaskImpl>();
+            registry.forEachOwnedBy(owner, owned::add);
+            assertEquals(owned.size(), registry.sizeOwnedBy(owner));
+            for (FabricTaskImpl task : reference.values()) {
+                assertEquals(task.getOwner() == owner, owned.contains(task));
+            }
+        }
+    }
+
+    @Test
+    void indexesTasksByOwner() {
+        final FabricTaskRegistry registry = new FabricTaskRegistry();
+        final List<FabricTaskImpl> owned = new ArrayList<FabricTaskImpl>();
+        for (int id = 1; id <= 1000; id++) {
+            final FabricTaskImpl task = task(id % 4 == 0 ? first : second, id);
+            registry.put(task);
+            if (id % 4 == 0) {
+                owned.add(task);
+            }
+        }
+        assertEquals(250, registry.sizeOwnedBy(first));
+        assertEquals(750, registry.sizeOwnedBy(second));
+        final Set<FabricTaskImpl> seen = new HashSet<FabricTaskImpl>();
+        registry.forEachOwnedBy(first, task -> {
+            assertSame(first, task.getOwner());
+            assertTrue(seen.add(task));
+        });
+        assertEquals(new HashSet<FabricTaskImpl>(owned), seen);
+
+        for (FabricTaskImpl task : owned) {
+            assertTrue(registry.remove(task.getTaskId(), task));
+        }
+        assertEquals(0, registry.sizeOwnedBy(first));
+        registry.forEachOwnedBy(first, task -> {
+            throw new AssertionError("Removed task " + task.getTaskId() + " still indexed");
+        });
+        assertEquals(750, registry.sizeOwnedBy(second));
+        assertEquals(750, registry.size());
+
+        // The owner index is created again after being emptied
+        registry.put(task(first, 5000));
+        assertEquals(1, registry.sizeOwnedBy(first));
+    }
+
+    @Test
+    void concurrentProducersDontLoseTasks() throws InterruptedException {
+        final FabricTaskRegistry registry = new FabricTaskRegistry();
+        final int threads = 4;
+        final int perThread = 25000;
+        final List<Thread> producers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * perThread;
+            final Mod owner = t % 2 == 0 ? first : second;
+            producers.add(new Thread(() -> {
+                for (int id = offset + 1; id <= offset + perThread; id++) {
+                    registry.put(task(owner, id));
+                    if (id % 5 == 0) {
+                        registry.remove(id);
+                    }
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(threads * perThread / 5 * 4, registry.size());
+        assertEquals(registry.size(), registry.sizeOwnedBy(first) + registry.sizeOwnedBy(second));
+        for (int id = 1; id <= threads * perThread; id++) {
+            if (id % 5 == 0) {
+                assertNull(registry.get(id));
+            } else {
+                assertEquals(id, registry.get(id).getTaskId());
+            }
+        }
+    }
+
+    @Test
+    void conditionalRemoveNeverDropsAReplacement() throws InterruptedException {
+        final FabricTaskRegistry registry = new FabricTaskRegistry();
+        final int count = 50000;
+        final FabricTaskImpl[] originals = new FabricTaskImpl[count + 1];
+        final FabricTaskImpl[] replacements = new FabricTaskImpl[count + 1];
+        for (int id = 1; id <= count; id++) {
+            originals[id] = task(first, id);
+            replacements[id] = task(second, id);
+            registry.put(originals[id]);
+        }
+        // Cancellation only removes the task it looked up, whichever order it races a new task with the same id
+        final Thread replacing = new Thread(() -> {
+            for (int id = 1; id <= count; id++) {
+                registry.put(replacements[id]);
+            }
+        });
+        final Thread cancelling = new Thread(() -> {
+            for (int id = 1; id <= count; id++) {
+                registry.remove(id, originals[id]);
+            }
+        });
+        replacing.start();
+        cancelling.start();
+        replacing.join();
+        cancelling.join();
+        for (int id = 1; id <= count; id++) {
+            assertSame(replacements[id], registry.get(id));
+        }
+        assertEquals(count, registry.size());
+        assertEquals(0, registry.sizeOwnedBy(first));
+        assertEquals(count, registry.sizeOwnedBy(second));
+    }
+
+    private static FabricTaskImpl task(final Mod owner, final int id) {
+        return new FabricTaskImpl(owner, null, id, -1l);
+    }
+}
@@ -0,0 +1,184 @@
+package com.bati.fabricscheduler.impl;
+
+import com.bati.fabricscheduler.model.TaskPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FabricTimingWheelTest {
+
+    /**
+     * Ticks covered by the wheel before tasks go to the overflow list, 64^5
+     */
+    private static final long SPAN = 1l << 30;
+
+    @Test
+    void expiresOnTheDueTickAcrossLevelBoundaries() {
+        // Both sides of the boundary between every pair of levels
+        final long[] delays = {1l, 2l, 63l, 64l, 65l, 127l, 128l, 4095l, 4096l, 4097l, 262143l, 262144l, 262145l};
+        for (long start : new long[] {0l, 1l, 63l, 4095l, 262143l, 1000003l}) {
+            for (long delay : delays) {
+                assertExpiresOnTime(start, delay);
+            }
+        }
+        // Ticks through 2^24 ticks each, so fewer of them
+        for (long start : new long[] {0l, 1000003l}) {
+            for (long delay : new long[] {16777215l, 16777216l, 16777217l}) {
+                assertExpiresOnTime(start, delay);
+            }
+        }
+    }
+
+    @Test
+    void cascadesSharedSlotsInDueOrder() {
+        final FabricTimingWheel wheel = new FabricTimingWheel(0l);
+        final List<FabricTaskImpl> tasks = new ArrayList<FabricTaskImpl>();
+        // Same level 1 slot, due on different ticks
+        for (long due = 4095l; due >= 4032l; due -= 7l) {
+            final FabricTaskImpl task = task(due);
+            tasks.add(task);
+            wheel.add(task);
+        }
+        for (long tick = 1l; tick <= 4096l; tick++) {
+            wheel.advance(tick);
+            FabricTaskImpl task;
+            while ((task = wheel.poll()) != null) {
+                assertEquals(tick, task.getNextRun());
+                assertTrue(tasks.remove(task));
+            }
+        }
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    void keepsOverflowTasksAcrossTheTopLevelWrap() {
+        // Ticking through a whole span is too slow for a test, so the wrap is crossed in small steps and the
+        // rest of the way is skipped with a jump, which re-inserts every task
+        final long start = SPAN - 10l;
+        final FabricTimingWheel wheel = new FabricTimingWheel(start);
+        final FabricTaskImpl overflow = task(start + SPAN + 5l);
+        final FabricTaskImpl near = task(SPAN + 3l);
+        wheel.add(overflow);
+        wheel.add(near);
+        for (long tick = start + 1l; tick < SPAN + 3l; tick++) {
+            wheel.advance(tick);
+            assertNull(wheel.poll());
+        }
+        wheel.advance(SPAN + 3l);
+        assertSame(near, wheel.poll());
+        assertNull(wheel.poll());
+        assertEquals(1, wheel.size());
+        wheel.advance(overflow.getNextRun() + SPAN);
+        assertSame(overflow, wheel.poll());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    void tasksDueInThePastAreReadyRightAway() {
+        final FabricTimingWheel wheel = new FabricTimingWheel(100l);
+        final FabricTaskImpl task = task(40l);
+        wheel.add(task);
+        assertEquals(1, wheel.readySize());
+        assertSame(task, wheel.poll());
+    }
+
+    @Test
+    void pollsHigherPrioritiesFirst() {
+        final FabricTimingWheel wheel = new FabricTimingWheel(0l);
+        final FabricTaskImpl background = task(1l, TaskPriority.BACKGROUND);
+        final FabricTaskImpl normal = task(1l, TaskPriority.NORMAL);
+        final FabricTaskImpl critical = task(1l, TaskPriority.CRITICAL);
+        wheel.add(background);
+        wheel.add(normal);
+        wheel.add(critical);
+        wheel.advance(1l);
+        assertEquals(3, wheel.readySize());
+        assertSame(critical, wheel.peek());
+        assertSame(critical, wheel.poll());
+        assertSame(normal, wheel.poll());
+        assertSame(background, wheel.poll(TaskPriority.BACKGROUND.ordinal()));
+        assertEquals(0, wheel.readySize());
+    }
+
+    @Test
+    void removeIfKeepsTheOthersScheduled() {
+        final FabricTimingWheel wheel = new FabricTimingWheel(0l);
+        final List<FabricTaskImpl> kept = new ArrayList<FabricTaskImpl>();
+        for (int i = 0; i < 200; i++) {
+            final FabricTaskImpl task = task(i * 37l);
+            wheel.add(task);
+            if (i % 3 != 0) {
+                kept.add(task);
+            }
+        }
+        wheel.removeIf(task -> task.getNextRun() / 37l % 3l == 0l);
+        assertEquals(kept.size(), wheel.size());
+        for (long tick = 1l; tick <= 200l * 37l; tick++) {
+            wheel.advance(tick);
+            FabricTaskImpl task;
+            while ((task = wheel.poll()) != null) {
+                assertTrue(kept.remove(task));
+                assertTrue(task.getNextRun() <= tick);
+            }
+        }
+        assertTrue(kept.isEmpty());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    void matchesAReferenceUnderRandomLoad() {
+        final Random random = new Random(42l);
+        final FabricTimingWheel wheel = new FabricTimingWheel(0l);
+        final Map<FabricTaskImpl, Long> due = new IdentityHashMap<FabricTaskImpl, Long>();
+        long tick = 0l;
+        for (int step = 0; step < 50000; step++) {
+            for (int i = random.nextInt(3); i > 0; i--) {
+                final long delay = random.nextInt(10) == 0 ? random.nextInt(2000000) : random.nextInt(5000) - 5;
+                final FabricTaskImpl task = task(tick + delay);
+                due.put(task, task.getNextRun());
+                wheel.add(task);
+            }
+            tick += random.nextInt(100) == 0 ? 1 + random.nextInt(3000) : 1;
+            wheel.advance(tick);
+            FabricTaskImpl task;
+            while ((task = wheel.poll()) != null) {
+                assertTrue(due.remove(task) <= tick, "expired early");
+            }
+            for (long nextRun : due.values()) {
+                assertTrue(nextRun > tick, "expired late");
+            }
+        }
+        assertEquals(due.size(), wheel.size());
+    }
+
+    private static void assertExpiresOnTime(final long start, final long delay) {
+        final FabricTimingWheel wheel = new FabricTimingWheel(start);
+        final FabricTaskImpl task = task(start + delay);
+        wheel.add(task);
+        wheel.advance(start + delay - 1);
+        assertNull(wheel.poll(), "expired early, start " + start + " delay " + delay);
+        wheel.advance(start + delay);
+        assertSame(task, wheel.poll(), "not expired, start " + start + " delay " + delay);
+        assertTrue(wheel.isEmpty());
+    }
+
+    private static FabricTaskImpl task(final long nextRun) {
+        return task(nextRun, TaskPriority.NORMAL);
+    }
+
+    private static FabricTaskImpl task(final long nextRun, final TaskPriority priority) {
+        final FabricTaskImpl task = new FabricTaskImpl();
+        task.setNextRun(nextRun);
+        task.setPriority(priority);
+        return task;
+    }
+}